@@ -66,14 +66,18 @@ public class DataEntry<T> {
 
     @Nullable
     public T getValue() {
-        if (expiration != null && expiration > 0 && System.currentTimeMillis() >= expiration) {
-            setValue(null);
-        }
+        // Expired values are cleared by the expiration wheel
+        return peekValue();
+    }
+
+    @Nullable
+    protected T peekValue() {
         return value;
     }
 
     @Nullable
     public String getSavedValue() {
+        final T value = peekValue();
         if (value == null) {
             return null;
         }
@@ -84,6 +88,7 @@ public class DataEntry<T> {
     @SuppressWarnings("unchecked")
     public Object getUserValue(@NotNull Function<String, String> userParser) {
         if (userValue == null) {
+            final T value = peekValue();
             T tempValue = value == null ? type.getDefaultValue() : value;
             if (tempValue == null) {
                 userValue = NULL_VALUE;
@@ -108,6 +113,10 @@ public class DataEntry<T> {
 
     public void setValue(@Nullable T value) {
         this.value = value;
+        markEdited();
+    }
+
+    protected void markEdited() {
         this.edited = true;
         this.userValue = null;
     }
@@ -125,7 +134,7 @@ public class DataEntry<T> {
         return "DataEntry{" +
                 "id=" + id +
                 ", type=" + type +
-                ", value=" + value +
+                ", value=" + peekValue() +
                 ", expiration=" + expiration +
                 ", userValue=" + userValue +
                 ", edited=" + edited +
@@ -40,7 +40,7 @@ public class DataNode implements ConcurrentMap<String, DataEntry<?>> {
                 SaveData.logException(2, t, () -> "Cannot parse value '" + entry.getValue() + "'  as " +  dataType.getTypeName() + " while getting deprecated data");
                 continue;
             }
-            node.put(entry.getKey(), new DataEntry<>(dataType, parsedValue));
+            node.put(entry.getKey(), dataType.createEntry(null, parsedValue, null));
         }
         return node;
     }
@@ -2,6 +2,8 @@ package com.saicone.savedata.api.data;
 
 import com.saicone.savedata.api.data.type.BigDecimalDataType;
 import com.saicone.savedata.api.data.type.BigIntegerDataType;
+import com.saicone.savedata.api.data.type.DoubleDataType;
+import com.saicone.savedata.api.data.type.LongDataType;
 import com.saicone.savedata.api.data.type.collection.BitFieldDataType;
 import com.saicone.savedata.api.data.type.collection.ListDataType;
 import com.saicone.savedata.api.data.type.collection.SetDataType;
@@ -12,8 +14,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Type;
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -49,18 +49,18 @@ public class DataType<T> {
             case "boolean":
                 return builder(id, Types.BOOLEAN);
             case "byte":
-                return BigIntegerDataType.builder(id, Types.BIG_INTEGER, BigInteger.valueOf(Byte.MIN_VALUE), BigInteger.valueOf(Byte.MAX_VALUE));
+                return LongDataType.builder(id, Types.LONG, (long) Byte.MIN_VALUE, (long) Byte.MAX_VALUE);
             case "short":
-                return BigIntegerDataType.builder(id, Types.BIG_INTEGER, BigInteger.valueOf(Short.MIN_VALUE), BigInteger.valueOf(Short.MAX_VALUE));
+                return LongDataType.builder(id, Types.LONG, (long) Short.MIN_VALUE, (long) Short.MAX_VALUE);
             case "int":
             case "integer":
-                return BigIntegerDataType.builder(id, Types.BIG_INTEGER, BigInteger.valueOf(Integer.MIN_VALUE), BigInteger.valueOf(Integer.MAX_VALUE));
+                return LongDataType.builder(id, Types.LONG, (long) Integer.MIN_VALUE, (long) Integer.MAX_VALUE);
             case "float":
-                return BigDecimalDataType.builder(id, Types.BIG_DECIMAL, BigDecimal.valueOf(Float.MIN_VALUE), BigDecimal.valueOf(Float.MAX_VALUE));
+                return DoubleDataType.builder(id, Types.DOUBLE, (double) -Float.MAX_VALUE, (double) Float.MAX_VALUE);
             case "long":
-                return BigIntegerDataType.builder(id, Types.BIG_INTEGER, BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE));
+                return LongDataType.builder(id, Types.LONG, Long.MIN_VALUE, Long.MAX_VALUE);
             case "double":
-                return BigDecimalDataType.builder(id, Types.BIG_DECIMAL, BigDecimal.valueOf(Double.MIN_VALUE), BigDecimal.valueOf(Double.MAX_VALUE));
+                return DoubleDataType.builder(id, Types.DOUBLE, -Double.MAX_VALUE, Double.MAX_VALUE);
             case "number":
             case "biginteger":
                 return BigIntegerDataType.builder(id, Types.BIG_INTEGER, null, null);
@@ -80,7 +80,7 @@ public class DataType<T> {
             case "localdatetime":
                 return builder(id, Types.LOCAL_DATE_TIME);
             case "bitfield":
-                return BitFieldDataType.builder(id, Types.BIG_INTEGER, Types.INTEGER);
+                return BitFieldDataType.builder(id, BitFieldDataType.PARSER, BitFieldDataType.ELEMENT_PARSER);
             default:
                 if (type.contains("<") && type.endsWith(">")) {
                     final int index = type.indexOf('<');
@@ -208,6 +208,11 @@ public class DataType<T> {
         return load(userParseable && object instanceof String ? userParser.apply((String) object) : object);
     }
 
+    @NotNull
+    public DataEntry<T> createEntry(@Nullable Integer id, @Nullable T value, @Nullable Long expiration) {
+        return new DataEntry<>(id, this, value, expiration);
+    }
+
     @NotNull
     public Object eval(@NotNull T t) {
         return t;
@@ -228,6 +233,16 @@ public class DataType<T> {
         return t.toString();
     }
 
+    /**
+     * Check if provided saved object was written using an old format and should be saved again.
+     *
+     * @param object the saved object.
+     * @return       true if the object must be rewritten.
+     */
+    public boolean isOutdated(@Nullable Object object) {
+        return false;
+    }
+
     public boolean test(@NotNull T a, @NotNull Object b) {
         throw new UnsupportedOperationException("The " + this.getClass().getSimpleName() + " instance cannot make a test");
     }
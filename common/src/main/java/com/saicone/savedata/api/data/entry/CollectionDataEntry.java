@@ -0,0 +1,217 @@
+package com.saicone.savedata.api.data.entry;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataOperator;
+import com.saicone.savedata.api.data.type.CollectionDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Data entry that holds a collection and records every added or removed element,
+ * so the storage can write the changes instead of the full collection.<br>
+ * The value can also be provided by a loader, that will be called on first access.
+ *
+ * @param <T> the collection type.
+ * @param <E> the element type.
+ */
+public class CollectionDataEntry<T, E> extends DataEntry<T> {
+
+    private T value;
+
+    private transient Supplier<T> loader;
+    private transient final List<Change<E>> changes = new ArrayList<>();
+    // True when the storage doesn't hold the current value as separated elements
+    private transient boolean rewrite = true;
+
+    public CollectionDataEntry(@Nullable Integer id, @NotNull CollectionDataType<T, E> type, @Nullable T value, @Nullable Long expiration) {
+        super(id, type, null, expiration);
+        this.value = value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public @NotNull CollectionDataType<T, E> getType() {
+        return (CollectionDataType<T, E>) super.getType();
+    }
+
+    public synchronized boolean isRewrite() {
+        return rewrite;
+    }
+
+    @Override
+    protected synchronized @Nullable T peekValue() {
+        if (loader != null) {
+            value = loader.get();
+            loader = null;
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void setValue(@Nullable T value) {
+        this.value = value;
+        this.loader = null;
+        requireRewrite();
+        markEdited();
+    }
+
+    /**
+     * Set the loader that provides the current value on first access.
+     *
+     * @param loader the value loader.
+     * @param stored true if the storage can receive element changes for the loaded value.
+     */
+    public synchronized void setLoader(@NotNull Supplier<T> loader, boolean stored) {
+        this.value = null;
+        this.loader = loader;
+        this.changes.clear();
+        this.rewrite = !stored;
+    }
+
+    /**
+     * Add or remove an element from current value, or the default value if there's no current value.
+     *
+     * @param operator the operator to apply.
+     * @param element  the element to add or remove.
+     * @return         true if the operation was applied, false if there's no value to modify or the operator is not supported.
+     */
+    public synchronized boolean apply(@NotNull DataOperator operator, @NotNull E element) {
+        final boolean add;
+        switch (operator) {
+            case ADD:
+            case RAW_ADD:
+                add = true;
+                break;
+            case SUBTRACT:
+            case RAW_SUBTRACT:
+                add = false;
+                break;
+            default:
+                return false;
+        }
+        final T current = getValue();
+        if (current == null) {
+            final T defaultValue = getType().getDefaultValue();
+            if (defaultValue == null) {
+                return false;
+            }
+            setValue(add ? getType().add(defaultValue, element) : getType().remove(defaultValue, element));
+            return true;
+        }
+        final int size = size(current);
+        final T result = add ? getType().add(current, element) : getType().remove(current, element);
+        if (result != current || size < 0) {
+            setValue(result);
+            return true;
+        }
+        if (size(result) != size && !rewrite) {
+            if (add || current instanceof Set) {
+                changes.add(new Change<>(add, element));
+            } else {
+                // A list only removes the first occurrence, that cannot be expressed as element change
+                requireRewrite();
+            }
+        }
+        markEdited();
+        return true;
+    }
+
+    /**
+     * Retrieve and clear the pending changes.<br>
+     * If the full value must be written, the returned delta is marked as rewrite and contains every element as addition.
+     *
+     * @return a delta of changes.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public synchronized Delta<E> poll() {
+        if (rewrite) {
+            rewrite = false;
+            final T value = peekValue();
+            final List<Change<E>> list = new ArrayList<>();
+            if (value instanceof Collection) {
+                for (E element : (Collection<E>) value) {
+                    list.add(new Change<>(true, element));
+                }
+            }
+            return new Delta<>(true, list);
+        }
+        final Delta<E> delta = new Delta<>(false, new ArrayList<>(changes));
+        changes.clear();
+        return delta;
+    }
+
+    /**
+     * Get the saved value, the full value is considered as written so the pending changes are discarded.
+     *
+     * @return a saved value or null.
+     */
+    @Nullable
+    public synchronized String pollSavedValue() {
+        this.changes.clear();
+        this.rewrite = false;
+        return getSavedValue();
+    }
+
+    /**
+     * Discard the pending changes and make the next delta a full rewrite.
+     */
+    public synchronized void requireRewrite() {
+        this.changes.clear();
+        this.rewrite = true;
+    }
+
+    private static int size(@NotNull Object object) {
+        return object instanceof Collection ? ((Collection<?>) object).size() : -1;
+    }
+
+    public static final class Change<E> {
+
+        private final boolean added;
+        private final E element;
+
+        public Change(boolean added, @NotNull E element) {
+            this.added = added;
+            this.element = element;
+        }
+
+        public boolean isAdded() {
+            return added;
+        }
+
+        @NotNull
+        public E getElement() {
+            return element;
+        }
+    }
+
+    public static final class Delta<E> {
+
+        private final boolean rewrite;
+        private final List<Change<E>> changes;
+
+        public Delta(boolean rewrite, @NotNull List<Change<E>> changes) {
+            this.rewrite = rewrite;
+            this.changes = changes;
+        }
+
+        public boolean isRewrite() {
+            return rewrite;
+        }
+
+        public boolean isEmpty() {
+            return !rewrite && changes.isEmpty();
+        }
+
+        @NotNull
+        public List<Change<E>> getChanges() {
+            return changes;
+        }
+    }
+}
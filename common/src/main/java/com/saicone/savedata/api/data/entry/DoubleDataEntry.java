@@ -0,0 +1,102 @@
+package com.saicone.savedata.api.data.entry;
+
+import com.saicone.savedata.api.data.DataOperator;
+import com.saicone.savedata.api.data.type.DoubleDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class DoubleDataEntry extends NumberDataEntry<Double> {
+
+    private double primitive;
+
+    private transient Double boxed;
+
+    public DoubleDataEntry(@Nullable Integer id, @NotNull DoubleDataType type, @Nullable Double value, @Nullable Long expiration) {
+        super(id, type, expiration);
+        if (value != null) {
+            this.primitive = value;
+            this.present = true;
+            this.boxed = value;
+        }
+    }
+
+    @Override
+    public @NotNull DoubleDataType getType() {
+        return (DoubleDataType) super.getType();
+    }
+
+    @Override
+    protected @Nullable Double peekValue() {
+        if (!present) {
+            return null;
+        }
+        if (boxed == null) {
+            boxed = primitive;
+        }
+        return boxed;
+    }
+
+    @Override
+    public @Nullable String getSavedValue() {
+        return present ? Double.toString(primitive) : null;
+    }
+
+    public double getDouble() {
+        return primitive;
+    }
+
+    @Override
+    public void setValue(@Nullable Double value) {
+        if (value == null) {
+            this.present = false;
+            this.boxed = null;
+        } else {
+            this.primitive = value;
+            this.present = true;
+            this.boxed = value;
+        }
+        markEdited();
+    }
+
+    public void setDouble(double value) {
+        this.primitive = value;
+        this.present = true;
+        this.boxed = null;
+        markEdited();
+    }
+
+    @Override
+    public boolean apply(@NotNull DataOperator operator, @NotNull Number operand) {
+        final double current;
+        if (isPresent()) {
+            current = primitive;
+        } else {
+            final Double defaultValue = getType().getDefaultValue();
+            if (defaultValue == null) {
+                return false;
+            }
+            current = defaultValue;
+        }
+        final double value = operand.doubleValue();
+        switch (operator) {
+            case ADD:
+            case RAW_ADD:
+                setDouble(getType().add(current, value));
+                return true;
+            case SUBTRACT:
+            case RAW_SUBTRACT:
+                setDouble(getType().remove(current, value));
+                return true;
+            case MULTIPLY:
+            case RAW_MULTIPLY:
+                setDouble(getType().multiply(current, value));
+                return true;
+            case DIVIDE:
+            case RAW_DIVIDE:
+                setDouble(getType().divide(current, value));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
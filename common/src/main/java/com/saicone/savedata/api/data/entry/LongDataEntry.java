@@ -0,0 +1,102 @@
+package com.saicone.savedata.api.data.entry;
+
+import com.saicone.savedata.api.data.DataOperator;
+import com.saicone.savedata.api.data.type.LongDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class LongDataEntry extends NumberDataEntry<Long> {
+
+    private long primitive;
+
+    private transient Long boxed;
+
+    public LongDataEntry(@Nullable Integer id, @NotNull LongDataType type, @Nullable Long value, @Nullable Long expiration) {
+        super(id, type, expiration);
+        if (value != null) {
+            this.primitive = value;
+            this.present = true;
+            this.boxed = value;
+        }
+    }
+
+    @Override
+    public @NotNull LongDataType getType() {
+        return (LongDataType) super.getType();
+    }
+
+    @Override
+    protected @Nullable Long peekValue() {
+        if (!present) {
+            return null;
+        }
+        if (boxed == null) {
+            boxed = primitive;
+        }
+        return boxed;
+    }
+
+    @Override
+    public @Nullable String getSavedValue() {
+        return present ? Long.toString(primitive) : null;
+    }
+
+    public long getLong() {
+        return primitive;
+    }
+
+    @Override
+    public void setValue(@Nullable Long value) {
+        if (value == null) {
+            this.present = false;
+            this.boxed = null;
+        } else {
+            this.primitive = value;
+            this.present = true;
+            this.boxed = value;
+        }
+        markEdited();
+    }
+
+    public void setLong(long value) {
+        this.primitive = value;
+        this.present = true;
+        this.boxed = null;
+        markEdited();
+    }
+
+    @Override
+    public boolean apply(@NotNull DataOperator operator, @NotNull Number operand) {
+        final long current;
+        if (isPresent()) {
+            current = primitive;
+        } else {
+            final Long defaultValue = getType().getDefaultValue();
+            if (defaultValue == null) {
+                return false;
+            }
+            current = defaultValue;
+        }
+        final long value = operand.longValue();
+        switch (operator) {
+            case ADD:
+            case RAW_ADD:
+                setLong(getType().add(current, value));
+                return true;
+            case SUBTRACT:
+            case RAW_SUBTRACT:
+                setLong(getType().remove(current, value));
+                return true;
+            case MULTIPLY:
+            case RAW_MULTIPLY:
+                setLong(getType().multiply(current, value));
+                return true;
+            case DIVIDE:
+            case RAW_DIVIDE:
+                setLong(getType().divide(current, value));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.saicone.savedata.api.data.entry;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataOperator;
+import com.saicone.savedata.api.data.type.NumberDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Data entry that holds a primitive number, so arithmetic operations don't create intermediate objects.
+ *
+ * @param <T> the number type.
+ */
+public abstract class NumberDataEntry<T extends Number> extends DataEntry<T> {
+
+    protected boolean present;
+
+    public NumberDataEntry(@Nullable Integer id, @NotNull NumberDataType<T> type, @Nullable Long expiration) {
+        super(id, type, null, expiration);
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * Apply an arithmetic operator into the current value, or the default value if there's no current value.
+     *
+     * @param operator the operator to apply.
+     * @param operand  the number to use with operator.
+     * @return         true if the operation was applied, false if there's no value to modify or the operator is not arithmetic.
+     */
+    public abstract boolean apply(@NotNull DataOperator operator, @NotNull Number operand);
+}
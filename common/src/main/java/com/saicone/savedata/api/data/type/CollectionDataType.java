@@ -1,26 +1,45 @@
 package com.saicone.savedata.api.data.type;
 
+import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.api.data.entry.CollectionDataEntry;
 import com.saicone.types.TypeParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
 
 public abstract class CollectionDataType<T, E> extends DataType<T> {
 
+    protected static final int CODEC_VERSION = 1;
+    // Base64 representation of java serialization stream header (0xACED0005)
+    private static final String LEGACY_PREFIX = "rO0";
+
     private final TypeParser<E> elementParser;
+    private final ElementCodec<E> elementCodec;
 
     public CollectionDataType(@NotNull String id, @NotNull TypeParser<T> parser, @NotNull TypeParser<E> elementParser, @Nullable T defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable) {
         super(id, parser, defaultValue, permission, expression, userParseable);
         this.elementParser = elementParser;
+        this.elementCodec = ElementCodec.of(elementParser);
+    }
+
+    @NotNull
+    public ElementCodec<E> getElementCodec() {
+        return elementCodec;
     }
 
     @NotNull
@@ -33,13 +52,78 @@ public abstract class CollectionDataType<T, E> extends DataType<T> {
         if (object == null) {
             return getParser().parse(new Object[0]);
         }
-        try (ByteArrayInputStream in = new ByteArrayInputStream(Base64.getDecoder().decode(String.valueOf(object))); ObjectInputStream input = new ObjectInputStream(in)) {
+        final String s = String.valueOf(object);
+        final byte[] bytes = Base64.getDecoder().decode(s);
+        if (s.startsWith(LEGACY_PREFIX)) {
+            return loadLegacy(bytes);
+        }
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(input, input.readUnsignedByte());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @NotNull
+    private T loadLegacy(byte[] bytes) {
+        try (ByteArrayInputStream in = new ByteArrayInputStream(bytes); ObjectInputStream input = new ObjectInputStream(in)) {
             return getParser().parse(input.readObject());
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @NotNull
+    protected T read(@NotNull DataInput input, int version) throws IOException {
+        if (version != CODEC_VERSION) {
+            throw new IOException("Unsupported " + this.getClass().getSimpleName() + " format version: " + version);
+        }
+        final int size = ElementCodec.readVarInt(input);
+        final List<E> list = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            list.add(elementCodec.read(input));
+        }
+        return getParser().parse(list);
+    }
+
+    /**
+     * Load a value from elements saved as text.
+     *
+     * @param elements the saved elements.
+     * @return         a collection with every valid element.
+     */
+    @NotNull
+    public T loadElements(@NotNull Collection<String> elements) {
+        final List<E> list = new ArrayList<>(elements.size());
+        for (String element : elements) {
+            final E e = elementParser.parse(element);
+            if (e != null) {
+                list.add(e);
+            }
+        }
+        return getParser().parse(list);
+    }
+
+    @NotNull
+    public String saveElement(@NotNull E element) {
+        return String.valueOf(element);
+    }
+
+    /**
+     * Apply element changes into provided value.
+     *
+     * @param value   the value to modify.
+     * @param changes the changes to apply in order.
+     * @return        the modified value.
+     */
+    @NotNull
+    public T apply(@NotNull T value, @NotNull List<CollectionDataEntry.Change<E>> changes) {
+        for (CollectionDataEntry.Change<E> change : changes) {
+            value = change.isAdded() ? add(value, change.getElement()) : remove(value, change.getElement());
+        }
+        return value;
+    }
+
     @NotNull
     public E loadElement(@Nullable Object object) {
         Objects.requireNonNull(object, "The " + this.getClass().getSimpleName() + " instance doesn't allow null objects");
@@ -50,13 +134,34 @@ public abstract class CollectionDataType<T, E> extends DataType<T> {
         return t;
     }
 
+    @Override
+    public @NotNull DataEntry<T> createEntry(@Nullable Integer id, @Nullable T value, @Nullable Long expiration) {
+        return new CollectionDataEntry<>(id, this, value, expiration);
+    }
+
     @Override
     public @NotNull String save(@NotNull T t) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream(); ObjectOutputStream output = new ObjectOutputStream(out)) {
-            output.writeObject(t);
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream(); DataOutputStream output = new DataOutputStream(out)) {
+            write(output, t);
+            output.flush();
             return Base64.getEncoder().encodeToString(out.toByteArray());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    @SuppressWarnings("unchecked")
+    protected void write(@NotNull DataOutput output, @NotNull T t) throws IOException {
+        output.writeByte(CODEC_VERSION);
+        final Collection<E> collection = (Collection<E>) t;
+        ElementCodec.writeVarInt(output, collection.size());
+        for (E element : collection) {
+            elementCodec.write(output, element);
+        }
+    }
+
+    @Override
+    public boolean isOutdated(@Nullable Object object) {
+        return object != null && String.valueOf(object).startsWith(LEGACY_PREFIX);
+    }
 }
@@ -0,0 +1,159 @@
+package com.saicone.savedata.api.data.type;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.api.data.entry.DoubleDataEntry;
+import com.saicone.types.TypeParser;
+import com.saicone.types.Types;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+
+public class DoubleDataType extends NumberDataType<Double> {
+
+    private final String format;
+
+    private transient final DecimalFormat decimalFormat;
+    private transient final double minDouble;
+    private transient final double maxDouble;
+
+    public DoubleDataType(@NotNull String id, @Nullable Double defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable, @Nullable Double min, @Nullable Double max, @Nullable String format) {
+        this(id, Types.DOUBLE, defaultValue, permission, expression, userParseable, min, max, format);
+    }
+
+    public DoubleDataType(@NotNull String id, @NotNull TypeParser<Double> parser, @Nullable Double defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable, @Nullable Double min, @Nullable Double max, @Nullable String format) {
+        super(id, parser, defaultValue, permission, expression, userParseable, min, max);
+        this.format = format;
+        this.decimalFormat = format == null ? null : new DecimalFormat(format);
+        this.minDouble = min == null ? -Double.MAX_VALUE : min;
+        this.maxDouble = max == null ? Double.MAX_VALUE : max;
+    }
+
+    @NotNull
+    public static Builder<Double> builder(@NotNull String id, @NotNull TypeParser<Double> parser, @Nullable Double min, @Nullable Double max) {
+        return new Builder<>(id, parser) {
+            @Override
+            public @NotNull DataType<Double> build() {
+                return new DoubleDataType(id(), parser(), defaultValue(), permission(), expression(), userParseable(), min(), max(), format());
+            }
+        }.min(min).max(max);
+    }
+
+    @Nullable
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    protected @NotNull Double getMinValue() {
+        return -Double.MAX_VALUE;
+    }
+
+    @Override
+    protected @NotNull Double getMaxValue() {
+        return Double.MAX_VALUE;
+    }
+
+    @Override
+    public @NotNull DataEntry<Double> createEntry(@Nullable Integer id, @Nullable Double value, @Nullable Long expiration) {
+        return new DoubleDataEntry(id, this, value, expiration);
+    }
+
+    @Override
+    public @NotNull Object eval(@NotNull Double d) {
+        if (decimalFormat != null) {
+            return decimalFormat.format(d.doubleValue());
+        }
+        // Same plain representation as big decimal
+        return BigDecimal.valueOf(d).toPlainString();
+    }
+
+    @Override
+    public @NotNull Double load(@Nullable Object object) {
+        if (object instanceof Double) {
+            return saturate((Double) object);
+        } else if (object instanceof Number) {
+            return saturate(((Number) object).doubleValue());
+        } else if (object instanceof String) {
+            try {
+                return saturate(Double.parseDouble(((String) object).trim()));
+            } catch (NumberFormatException ignored) { }
+        }
+        return super.load(object);
+    }
+
+    private static double saturate(double d) {
+        if (Double.isNaN(d)) {
+            throw new ArithmeticException("The value is not a number");
+        }
+        if (d == Double.POSITIVE_INFINITY) {
+            return Double.MAX_VALUE;
+        }
+        if (d == Double.NEGATIVE_INFINITY) {
+            return -Double.MAX_VALUE;
+        }
+        return d;
+    }
+
+    @Override
+    public @NotNull String save(@NotNull Double d) {
+        return Double.toString(d);
+    }
+
+    @Override
+    public @NotNull Double add(@NotNull Double a, @NotNull Object b) {
+        return add(a.doubleValue(), load(b).doubleValue());
+    }
+
+    @Override
+    public @NotNull Double remove(@NotNull Double a, @NotNull Object b) {
+        return remove(a.doubleValue(), load(b).doubleValue());
+    }
+
+    @Override
+    public @NotNull Double multiply(@NotNull Double a, @NotNull Object b) {
+        return multiply(a.doubleValue(), load(b).doubleValue());
+    }
+
+    @Override
+    public @NotNull Double divide(@NotNull Double a, @NotNull Object b) {
+        return divide(a.doubleValue(), load(b).doubleValue());
+    }
+
+    public double add(double a, double b) {
+        return check(a + b);
+    }
+
+    public double remove(double a, double b) {
+        return check(a - b);
+    }
+
+    public double multiply(double a, double b) {
+        return check(a * b);
+    }
+
+    public double divide(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return check(a / b);
+    }
+
+    private double check(double d) {
+        d = saturate(d);
+        if (d < this.minDouble) {
+            return this.minDouble;
+        }
+        if (d > this.maxDouble) {
+            return this.maxDouble;
+        }
+        return d;
+    }
+
+    @Override
+    public int compare(Double o1, Double o2) {
+        return o2 == null ? 1 : Double.compare(o1, o2);
+    }
+}
@@ -0,0 +1,154 @@
+package com.saicone.savedata.api.data.type;
+
+import com.saicone.types.TypeParser;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary codec for collection elements.<br>
+ * Integer numbers are written as zigzag varints and texts as length-prefixed UTF-8 bytes,
+ * any other element is written as text and parsed back with its type parser.
+ *
+ * @param <E> the element type.
+ */
+public interface ElementCodec<E> {
+
+    ElementCodec<String> STRING = of(ElementCodec::writeString, ElementCodec::readString);
+    ElementCodec<Integer> INTEGER = of((out, i) -> writeVarLong(out, zigzag(i)), in -> (int) unzigzag(readVarLong(in)));
+    ElementCodec<Long> LONG = of((out, l) -> writeVarLong(out, zigzag(l)), in -> unzigzag(readVarLong(in)));
+    ElementCodec<Short> SHORT = of((out, s) -> writeVarLong(out, zigzag(s)), in -> (short) unzigzag(readVarLong(in)));
+    ElementCodec<Byte> BYTE = of((out, b) -> out.writeByte(b), DataInput::readByte);
+    ElementCodec<Boolean> BOOLEAN = of(DataOutput::writeBoolean, DataInput::readBoolean);
+    ElementCodec<Double> DOUBLE = of(DataOutput::writeDouble, DataInput::readDouble);
+    ElementCodec<Float> FLOAT = of(DataOutput::writeFloat, DataInput::readFloat);
+    ElementCodec<UUID> UUID = of((out, uuid) -> {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }, in -> new UUID(in.readLong(), in.readLong()));
+
+    @NotNull
+    static <E> ElementCodec<E> of(@NotNull Writer<E> writer, @NotNull Reader<E> reader) {
+        return new ElementCodec<>() {
+            @Override
+            public void write(@NotNull DataOutput out, @NotNull E e) throws IOException {
+                writer.write(out, e);
+            }
+
+            @Override
+            public @NotNull E read(@NotNull DataInput in) throws IOException {
+                return reader.read(in);
+            }
+        };
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    static <E> ElementCodec<E> of(@NotNull TypeParser<E> parser) {
+        final Type type = parser.getType();
+        final ElementCodec<?> codec;
+        if (type == String.class) {
+            codec = STRING;
+        } else if (type == Integer.class) {
+            codec = INTEGER;
+        } else if (type == Long.class) {
+            codec = LONG;
+        } else if (type == Short.class) {
+            codec = SHORT;
+        } else if (type == Byte.class) {
+            codec = BYTE;
+        } else if (type == Boolean.class) {
+            codec = BOOLEAN;
+        } else if (type == Double.class) {
+            codec = DOUBLE;
+        } else if (type == Float.class) {
+            codec = FLOAT;
+        } else if (type == java.util.UUID.class) {
+            codec = UUID;
+        } else {
+            return of((out, e) -> writeString(out, String.valueOf(e)), in -> {
+                final String s = readString(in);
+                final E e = parser.parse(s);
+                if (e == null) {
+                    throw new IOException("The element '" + s + "' cannot be parsed");
+                }
+                return e;
+            });
+        }
+        return (ElementCodec<E>) codec;
+    }
+
+    void write(@NotNull DataOutput out, @NotNull E e) throws IOException;
+
+    @NotNull
+    E read(@NotNull DataInput in) throws IOException;
+
+    static void writeString(@NotNull DataOutput out, @NotNull String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    static String readString(@NotNull DataInput in) throws IOException {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(@NotNull DataOutput out, int i) throws IOException {
+        writeVarLong(out, i & 0xFFFFFFFFL);
+    }
+
+    static int readVarInt(@NotNull DataInput in) throws IOException {
+        final long l = readVarLong(in);
+        if (l < 0 || l > Integer.MAX_VALUE) {
+            throw new IOException("Invalid varint length: " + l);
+        }
+        return (int) l;
+    }
+
+    static void writeVarLong(@NotNull DataOutput out, long l) throws IOException {
+        while ((l & ~0x7FL) != 0) {
+            out.writeByte((int) ((l & 0x7F) | 0x80));
+            l >>>= 7;
+        }
+        out.writeByte((int) l);
+    }
+
+    static long readVarLong(@NotNull DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long zigzag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    static long unzigzag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+
+    @FunctionalInterface
+    interface Writer<E> {
+        void write(@NotNull DataOutput out, @NotNull E e) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<E> {
+        @NotNull
+        E read(@NotNull DataInput in) throws IOException;
+    }
+}
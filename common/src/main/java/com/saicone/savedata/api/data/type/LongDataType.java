@@ -0,0 +1,164 @@
+package com.saicone.savedata.api.data.type;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.api.data.entry.LongDataEntry;
+import com.saicone.types.TypeParser;
+import com.saicone.types.Types;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+public class LongDataType extends NumberDataType<Long> {
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private transient final long minLong;
+    private transient final long maxLong;
+
+    public LongDataType(@NotNull String id, @Nullable Long defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable, @Nullable Long min, @Nullable Long max) {
+        this(id, Types.LONG, defaultValue, permission, expression, userParseable, min, max);
+    }
+
+    public LongDataType(@NotNull String id, @NotNull TypeParser<Long> parser, @Nullable Long defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable, @Nullable Long min, @Nullable Long max) {
+        super(id, parser, defaultValue, permission, expression, userParseable, min, max);
+        this.minLong = min == null ? Long.MIN_VALUE : min;
+        this.maxLong = max == null ? Long.MAX_VALUE : max;
+    }
+
+    @NotNull
+    public static Builder<Long> builder(@NotNull String id, @NotNull TypeParser<Long> parser, @Nullable Long min, @Nullable Long max) {
+        return new Builder<>(id, parser) {
+            @Override
+            public @NotNull DataType<Long> build() {
+                return new LongDataType(id(), parser(), defaultValue(), permission(), expression(), userParseable(), min(), max());
+            }
+        }.min(min).max(max);
+    }
+
+    @Override
+    protected @NotNull Long getMinValue() {
+        return Long.MIN_VALUE;
+    }
+
+    @Override
+    protected @NotNull Long getMaxValue() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public @NotNull DataEntry<Long> createEntry(@Nullable Integer id, @Nullable Long value, @Nullable Long expiration) {
+        return new LongDataEntry(id, this, value, expiration);
+    }
+
+    @Override
+    public @NotNull Long load(@Nullable Object object) {
+        if (object instanceof Long) {
+            return (Long) object;
+        } else if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
+            return ((Number) object).longValue();
+        } else if (object instanceof Double || object instanceof Float) {
+            // Casting to long is already saturated
+            return (long) ((Number) object).doubleValue();
+        } else if (object instanceof BigInteger) {
+            return toLong((BigInteger) object);
+        } else if (object instanceof BigDecimal) {
+            return toLong(((BigDecimal) object).toBigInteger());
+        } else if (object instanceof String) {
+            final String s = ((String) object).trim();
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                try {
+                    return toLong(new BigDecimal(s).toBigInteger());
+                } catch (NumberFormatException ignored) { }
+            }
+        }
+        return super.load(object);
+    }
+
+    private static long toLong(@NotNull BigInteger i) {
+        if (i.compareTo(MIN_LONG) < 0) {
+            return Long.MIN_VALUE;
+        }
+        if (i.compareTo(MAX_LONG) > 0) {
+            return Long.MAX_VALUE;
+        }
+        return i.longValue();
+    }
+
+    @Override
+    public @NotNull Long add(@NotNull Long a, @NotNull Object b) {
+        return add(a.longValue(), load(b).longValue());
+    }
+
+    @Override
+    public @NotNull Long remove(@NotNull Long a, @NotNull Object b) {
+        return remove(a.longValue(), load(b).longValue());
+    }
+
+    @Override
+    public @NotNull Long multiply(@NotNull Long a, @NotNull Object b) {
+        return multiply(a.longValue(), load(b).longValue());
+    }
+
+    @Override
+    public @NotNull Long divide(@NotNull Long a, @NotNull Object b) {
+        return divide(a.longValue(), load(b).longValue());
+    }
+
+    public long add(long a, long b) {
+        final long result = a + b;
+        // Overflow if both arguments have the opposite sign of the result
+        if (((a ^ result) & (b ^ result)) < 0) {
+            return check(a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE);
+        }
+        return check(result);
+    }
+
+    public long remove(long a, long b) {
+        final long result = a - b;
+        // Overflow if the arguments have different sign and the result sign is not the same as the first argument
+        if (((a ^ b) & (a ^ result)) < 0) {
+            return check(a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE);
+        }
+        return check(result);
+    }
+
+    public long multiply(long a, long b) {
+        final long high = Math.multiplyHigh(a, b);
+        final long result = a * b;
+        if ((high == 0 && result >= 0) || (high == -1 && result < 0)) {
+            return check(result);
+        }
+        return check((a ^ b) < 0 ? Long.MIN_VALUE : Long.MAX_VALUE);
+    }
+
+    public long divide(long a, long b) {
+        if (b == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (a == Long.MIN_VALUE && b == -1) {
+            return check(Long.MAX_VALUE);
+        }
+        return check(a / b);
+    }
+
+    private long check(long i) {
+        if (i < this.minLong) {
+            return this.minLong;
+        }
+        if (i > this.maxLong) {
+            return this.maxLong;
+        }
+        return i;
+    }
+
+    @Override
+    public int compare(Long o1, Long o2) {
+        return o2 == null ? 1 : Long.compare(o1, o2);
+    }
+}
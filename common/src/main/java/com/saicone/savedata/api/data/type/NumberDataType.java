@@ -10,21 +10,54 @@ import com.saicone.types.TypeParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Comparator;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 public abstract class NumberDataType<T extends Number> extends DataType<T> implements Comparator<T> {
 
-    private static final Cache<String, Number> RESULT_CACHE = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.MINUTES).build();
+    private static final String VALUE_VARIABLE = "value";
 
     private final T min;
     private final T max;
 
+    // The expression is compiled once with {value} as variable, user parseable expressions are compiled by every parsed text
+    private transient final String variableExpression;
+    private transient final Expression compiledExpression;
+    private transient final Cache<String, Expression> userExpressions;
+
     public NumberDataType(@NotNull String id, @NotNull TypeParser<T> parser, @Nullable T defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable, @Nullable T min, @Nullable T max) {
         super(id, parser, defaultValue, permission, expression, userParseable);
         this.min = min;
         this.max = max;
+        if (expression == null) {
+            this.variableExpression = null;
+            this.compiledExpression = null;
+            this.userExpressions = null;
+        } else {
+            this.variableExpression = expression.replace("{value}", VALUE_VARIABLE);
+            if (userParseable) {
+                this.compiledExpression = null;
+                this.userExpressions = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(1, TimeUnit.MINUTES).build();
+            } else {
+                this.compiledExpression = compile(this.variableExpression);
+                this.userExpressions = null;
+            }
+        }
+    }
+
+    @Nullable
+    private static Expression compile(@NotNull String s) {
+        final Expression expression = new Expression(s);
+        try {
+            // Force the syntax tree creation, so copies don't need to parse it again
+            expression.getAbstractSyntaxTree();
+        } catch (ParseException e) {
+            return null;
+        }
+        return expression;
     }
 
     public boolean hasMin() {
@@ -57,29 +90,64 @@ public abstract class NumberDataType<T extends Number> extends DataType<T> imple
 
     @Override
     public @NotNull T parse(@Nullable Object object, boolean raw, @NotNull Function<String, String> userParser) {
-        String s = getExpression();
+        final String s = getExpression();
         if (s == null || raw) {
             return super.parse(object, raw, userParser);
         }
-        if (object != null) {
-            s = s.replace("{value}", object.toString());
-        }
-        if (this.isUserParseable()) {
-            s = userParser.apply(s);
+        final BigDecimal value = toDecimal(object);
+        Expression expression = this.compiledExpression;
+        if (expression == null && value != null && this.userExpressions != null) {
+            final String parsed = userParser.apply(this.variableExpression);
+            expression = this.userExpressions.getIfPresent(parsed);
+            if (expression == null) {
+                expression = compile(parsed);
+                if (expression != null) {
+                    this.userExpressions.put(parsed, expression);
+                }
+            }
         }
-        Number result = RESULT_CACHE.getIfPresent(s);
-        if (result == null) {
-            try {
-                if (this instanceof BigIntegerDataType) {
-                    result = new Expression(s).evaluate().getNumberValue().toBigInteger();
-                } else {
-                    result = new Expression(s).evaluate().getNumberValue();
+        BigDecimal result;
+        try {
+            if (expression == null || value == null) {
+                // Non-numeric values are replaced as text
+                String text = s;
+                if (object != null) {
+                    text = text.replace("{value}", object.toString());
+                }
+                if (this.isUserParseable()) {
+                    text = userParser.apply(text);
                 }
-            } catch (EvaluationException | ParseException e) {
-                throw new RuntimeException(e);
+                result = new Expression(text).evaluate().getNumberValue();
+            } else {
+                result = expression.copy().with(VALUE_VARIABLE, value).evaluate().getNumberValue();
             }
-            RESULT_CACHE.put(s, result);
+        } catch (EvaluationException | ParseException e) {
+            throw new RuntimeException(e);
+        }
+        if (this instanceof BigIntegerDataType) {
+            return load(result.toBigInteger());
         }
         return load(result);
     }
+
+    @Nullable
+    private static BigDecimal toDecimal(@Nullable Object object) {
+        if (object instanceof BigDecimal) {
+            return (BigDecimal) object;
+        } else if (object instanceof BigInteger) {
+            return new BigDecimal((BigInteger) object);
+        } else if (object instanceof Long || object instanceof Integer || object instanceof Short || object instanceof Byte) {
+            return BigDecimal.valueOf(((Number) object).longValue());
+        } else if (object instanceof Double || object instanceof Float) {
+            final double d = ((Number) object).doubleValue();
+            return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+        } else if (object instanceof String) {
+            try {
+                return new BigDecimal(((String) object).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
 }
@@ -1,47 +1,245 @@
 package com.saicone.savedata.api.data.type.collection;
 
+import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataType;
 import com.saicone.savedata.api.data.type.CollectionDataType;
+import com.saicone.savedata.api.data.type.ElementCodec;
 import com.saicone.types.TypeParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.math.BigInteger;
+import java.util.Base64;
+import java.util.BitSet;
 
-public class BitFieldDataType extends CollectionDataType<BigInteger, Integer> {
+/**
+ * Data type that holds flags as a mutable bit set.<br>
+ * Elements are bit masks, so a single operation can set, clear or test many bits
+ * using indexes separated by comma and inclusive ranges like {@code 1,4,10..20}.
+ */
+public class BitFieldDataType extends CollectionDataType<BitSet, BitSet> {
 
-    public BitFieldDataType(@NotNull String id, @NotNull TypeParser<BigInteger> parser, @NotNull TypeParser<Integer> elementParser, @Nullable BigInteger defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable) {
+    // Raw little-endian bytes, version 1 was a two's complement BigInteger
+    private static final int BITS_VERSION = 2;
+    private static final int MAX_BITS = 1 << 24;
+
+    public static final TypeParser<BitSet> PARSER = new TypeParser<>() {
+        @Override
+        public @Nullable Type getType() {
+            return BitSet.class;
+        }
+
+        @Override
+        public @Nullable BitSet parse(@NotNull Object object) {
+            if (object instanceof BitSet) {
+                return (BitSet) object;
+            } else if (object instanceof byte[]) {
+                return BitSet.valueOf((byte[]) object);
+            } else if (object instanceof BigInteger) {
+                return valueOf((BigInteger) object);
+            } else if (object instanceof Number) {
+                return valueOf(BigInteger.valueOf(((Number) object).longValue()));
+            } else if (object instanceof Object[] && ((Object[]) object).length == 0) {
+                return new BitSet();
+            }
+            try {
+                return valueOf(new BigInteger(String.valueOf(object).trim()));
+            } catch (NumberFormatException e) {
+                return ELEMENT_PARSER.parse(object);
+            }
+        }
+    };
+
+    public static final TypeParser<BitSet> ELEMENT_PARSER = new TypeParser<>() {
+        @Override
+        public @Nullable Type getType() {
+            return BitSet.class;
+        }
+
+        @Override
+        public @Nullable BitSet parse(@NotNull Object object) {
+            if (object instanceof BitSet) {
+                return (BitSet) object;
+            }
+            final BitSet mask = new BitSet();
+            if (object instanceof Number) {
+                return set(mask, ((Number) object).intValue(), ((Number) object).intValue()) ? mask : null;
+            } else if (object instanceof Iterable) {
+                for (Object o : (Iterable<?>) object) {
+                    final BitSet bits = parse(o);
+                    if (bits == null) {
+                        return null;
+                    }
+                    mask.or(bits);
+                }
+                return mask;
+            }
+            for (String s : String.valueOf(object).split("[,\\s]+")) {
+                if (s.isEmpty()) {
+                    continue;
+                }
+                int index = s.indexOf("..");
+                int length = 2;
+                if (index < 0) {
+                    index = s.indexOf('-', 1);
+                    length = 1;
+                }
+                try {
+                    final boolean valid;
+                    if (index > 0) {
+                        valid = set(mask, Integer.parseInt(s.substring(0, index).trim()), Integer.parseInt(s.substring(index + length).trim()));
+                    } else {
+                        final int bit = Integer.parseInt(s.trim());
+                        valid = set(mask, bit, bit);
+                    }
+                    if (!valid) {
+                        return null;
+                    }
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return mask;
+        }
+
+        private boolean set(@NotNull BitSet mask, int from, int to) {
+            if (from < 0 || to < from || to >= MAX_BITS) {
+                return false;
+            }
+            mask.set(from, to + 1);
+            return true;
+        }
+    };
+
+    public BitFieldDataType(@NotNull String id, @NotNull TypeParser<BitSet> parser, @NotNull TypeParser<BitSet> elementParser, @Nullable BitSet defaultValue, @Nullable String permission, @Nullable String expression, boolean userParseable) {
         super(id, parser, elementParser, defaultValue, permission, expression, userParseable);
     }
 
     @NotNull
-    public static Builder<BigInteger> builder(@NotNull String id, @NotNull TypeParser<BigInteger> parser, @NotNull TypeParser<Integer> elementParser) {
+    public static Builder<BitSet> builder(@NotNull String id, @NotNull TypeParser<BitSet> parser, @NotNull TypeParser<BitSet> elementParser) {
         return new Builder<>(id, parser) {
             @Override
-            public @NotNull DataType<BigInteger> build() {
+            public @NotNull DataType<BitSet> build() {
                 return new BitFieldDataType(id(), parser(), elementParser, defaultValue(), permission(), expression(), userParseable());
             }
         };
     }
 
+    @NotNull
+    public static BitSet valueOf(@NotNull BigInteger bigInteger) {
+        final byte[] bytes = bigInteger.abs().toByteArray();
+        reverse(bytes);
+        return BitSet.valueOf(bytes);
+    }
+
+    @NotNull
+    public static BigInteger toBigInteger(@NotNull BitSet bitSet) {
+        final byte[] bytes = bitSet.toByteArray();
+        reverse(bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    private static void reverse(byte[] bytes) {
+        for (int i = 0, j = bytes.length - 1; i < j; i++, j--) {
+            final byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+    }
+
+    @Override
+    public @Nullable BitSet getDefaultValue() {
+        // The value is modified in place, so every entry needs its own instance
+        final BitSet bitSet = super.getDefaultValue();
+        return bitSet == null ? new BitSet() : (BitSet) bitSet.clone();
+    }
+
+    @Override
+    public @NotNull DataEntry<BitSet> createEntry(@Nullable Integer id, @Nullable BitSet value, @Nullable Long expiration) {
+        // Bits are not stored as separated elements
+        return new DataEntry<>(id, this, value, expiration);
+    }
+
+    @Override
+    public @NotNull Object eval(@NotNull BitSet bitSet) {
+        // Compatible with the old BigInteger representation
+        return toBigInteger(bitSet);
+    }
+
     @Override
-    public @Nullable BigInteger getDefaultValue() {
-        final BigInteger i = super.getDefaultValue();
-        return i == null ? BigInteger.valueOf(0L) : i;
+    protected @NotNull BitSet read(@NotNull DataInput input, int version) throws IOException {
+        if (version != CODEC_VERSION && version != BITS_VERSION) {
+            throw new IOException("Unsupported " + this.getClass().getSimpleName() + " format version: " + version);
+        }
+        final byte[] bytes = new byte[ElementCodec.readVarInt(input)];
+        input.readFully(bytes);
+        if (version == CODEC_VERSION) {
+            return bytes.length == 0 ? new BitSet() : valueOf(new BigInteger(bytes));
+        }
+        return BitSet.valueOf(bytes);
+    }
+
+    @Override
+    protected void write(@NotNull DataOutput output, @NotNull BitSet bitSet) throws IOException {
+        output.writeByte(BITS_VERSION);
+        final byte[] bytes = bitSet.toByteArray();
+        ElementCodec.writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    @Override
+    public boolean isOutdated(@Nullable Object object) {
+        if (super.isOutdated(object)) {
+            return true;
+        } else if (object == null) {
+            return false;
+        }
+        // Any value written with BigInteger format
+        final String s = String.valueOf(object);
+        try {
+            return s.length() >= 4 && Base64.getDecoder().decode(s.substring(0, 4))[0] == CODEC_VERSION;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Count the set bits of provided value, only inside provided mask if any.
+     *
+     * @param bitSet the value to count.
+     * @param mask   the bits to count or null to count every bit.
+     * @return       an amount of set bits.
+     */
+    public int count(@NotNull BitSet bitSet, @Nullable Object mask) {
+        if (mask == null) {
+            return bitSet.cardinality();
+        }
+        final BitSet bits = (BitSet) loadElement(mask).clone();
+        bits.and(bitSet);
+        return bits.cardinality();
     }
 
     @Override
-    public boolean test(@NotNull BigInteger a, @NotNull Object b) {
-        return a.testBit(loadElement(b));
+    public boolean test(@NotNull BitSet a, @NotNull Object b) {
+        final BitSet mask = loadElement(b);
+        final BitSet missing = (BitSet) mask.clone();
+        missing.andNot(a);
+        return !mask.isEmpty() && missing.isEmpty();
     }
 
     @Override
-    public @NotNull BigInteger add(@NotNull BigInteger a, @NotNull Object b) {
-        return a.setBit(loadElement(b));
+    public @NotNull BitSet add(@NotNull BitSet a, @NotNull Object b) {
+        a.or(loadElement(b));
+        return a;
     }
 
     @Override
-    public @NotNull BigInteger remove(@NotNull BigInteger a, @NotNull Object b) {
-        return a.clearBit(loadElement(b));
+    public @NotNull BitSet remove(@NotNull BitSet a, @NotNull Object b) {
+        a.andNot(loadElement(b));
+        return a;
     }
 }
@@ -0,0 +1,276 @@
+package com.saicone.savedata.api.top;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persistent balanced order-statistic tree.<br>
+ * Every node keeps the size of its subtree, so insert, remove, rank of element
+ * and element at rank are resolved in O(log n).<br>
+ * The tree is immutable, every modification copies the affected path and return
+ * a new tree that share the untouched nodes, so any instance can be read from any
+ * thread without synchronization.
+ *
+ * @param <E> the element type.
+ */
+public class RankTree<E> {
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+
+    private RankTree(@NotNull Comparator<? super E> comparator, @Nullable Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    @NotNull
+    public static <E> RankTree<E> empty(@NotNull Comparator<? super E> comparator) {
+        return new RankTree<>(comparator, null);
+    }
+
+    /**
+     * Create a tree from a list of unique elements already sorted by provided comparator.
+     *
+     * @param comparator the comparator used to sort elements.
+     * @param sorted     the sorted elements.
+     * @return           a balanced tree with every element.
+     * @param <E>        the element type.
+     */
+    @NotNull
+    public static <E> RankTree<E> of(@NotNull Comparator<? super E> comparator, @NotNull List<E> sorted) {
+        return new RankTree<>(comparator, build(sorted, 0, sorted.size() - 1));
+    }
+
+    @Nullable
+    private static <E> Node<E> build(@NotNull List<E> sorted, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        final int middle = (from + to) >>> 1;
+        return new Node<>(sorted.get(middle), build(sorted, from, middle - 1), build(sorted, middle + 1, to));
+    }
+
+    @NotNull
+    public Comparator<? super E> getComparator() {
+        return comparator;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Get the element at provided index.
+     *
+     * @param index the zero-based index.
+     * @return      an element or null if the index is out of bounds.
+     */
+    @Nullable
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        Node<E> node = root;
+        while (node != null) {
+            final int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get every element in order.
+     *
+     * @return a list with every element.
+     */
+    @NotNull
+    public List<E> toList() {
+        final List<E> list = new ArrayList<>(size());
+        collect(root, list);
+        return list;
+    }
+
+    private static <E> void collect(@Nullable Node<E> node, @NotNull List<E> list) {
+        if (node == null) {
+            return;
+        }
+        collect(node.left, list);
+        list.add(node.element);
+        collect(node.right, list);
+    }
+
+    /**
+     * Find the stored element that is equal to provided element by comparator.
+     *
+     * @param element the element to find.
+     * @return        a stored element or null if there's no equal element.
+     */
+    @Nullable
+    public E find(@NotNull E element) {
+        Node<E> node = root;
+        while (node != null) {
+            final int result = comparator.compare(element, node.element);
+            if (result < 0) {
+                node = node.left;
+            } else if (result > 0) {
+                node = node.right;
+            } else {
+                return node.element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the index of provided element.
+     *
+     * @param element the element to find.
+     * @return        a zero-based index or -1 if the element is not inside the tree.
+     */
+    public int rank(@NotNull E element) {
+        int rank = 0;
+        Node<E> node = root;
+        while (node != null) {
+            final int result = comparator.compare(element, node.element);
+            if (result < 0) {
+                node = node.left;
+            } else if (result > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insert provided element, replacing any equal element.
+     *
+     * @param element the element to insert.
+     * @return        a tree with the element.
+     */
+    @NotNull
+    public RankTree<E> insert(@NotNull E element) {
+        return new RankTree<>(comparator, insert(root, element));
+    }
+
+    /**
+     * Remove provided element.
+     *
+     * @param element the element to remove.
+     * @return        a tree without the element, or the same tree if the element was not present.
+     */
+    @NotNull
+    public RankTree<E> remove(@NotNull E element) {
+        final Node<E> root = remove(this.root, element);
+        return root == this.root ? this : new RankTree<>(comparator, root);
+    }
+
+    @NotNull
+    private Node<E> insert(@Nullable Node<E> node, @NotNull E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        final int result = comparator.compare(element, node.element);
+        if (result < 0) {
+            return balance(node.element, insert(node.left, element), node.right);
+        } else if (result > 0) {
+            return balance(node.element, node.left, insert(node.right, element));
+        } else {
+            return new Node<>(element, node.left, node.right);
+        }
+    }
+
+    @Nullable
+    private Node<E> remove(@Nullable Node<E> node, @NotNull E element) {
+        if (node == null) {
+            return null;
+        }
+        final int result = comparator.compare(element, node.element);
+        if (result < 0) {
+            final Node<E> left = remove(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        } else if (result > 0) {
+            final Node<E> right = remove(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        Node<E> min = node.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.element, node.left, removeMin(node.right));
+    }
+
+    @Nullable
+    private Node<E> removeMin(@NotNull Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.element, removeMin(node.left), node.right);
+    }
+
+    @NotNull
+    private Node<E> balance(@NotNull E element, @Nullable Node<E> left, @Nullable Node<E> right) {
+        final int leftHeight = height(left);
+        final int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+            }
+            final Node<E> middle = left.right;
+            return new Node<>(middle.element, new Node<>(left.element, left.left, middle.left), new Node<>(element, middle.right, right));
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+            }
+            final Node<E> middle = right.left;
+            return new Node<>(middle.element, new Node<>(element, left, middle.left), new Node<>(right.element, middle.right, right.right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    private static int size(@Nullable Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(@Nullable Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node<E> {
+
+        private final E element;
+        private final Node<E> left;
+        private final Node<E> right;
+        private final int size;
+        private final int height;
+
+        Node(@NotNull E element, @Nullable Node<E> left, @Nullable Node<E> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+}
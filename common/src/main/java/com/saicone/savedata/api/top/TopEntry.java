@@ -1,7 +1,10 @@
 package com.saicone.savedata.api.top;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.saicone.mcode.module.task.Task;
 import com.saicone.savedata.SaveData;
+import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataUser;
 import com.saicone.savedata.api.data.type.NumberDataType;
 import com.saicone.savedata.module.data.DataClient;
@@ -9,37 +12,84 @@ import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class TopEntry<T extends Number> {
 
+    private static final int SNAPSHOT_MAGIC = 0x53445450; // SDTP
+    private static final byte SNAPSHOT_VERSION = 1;
+    // Recorded removal while a full load is running
+    private static final Object REMOVED = new Object();
+    // Minimum time to keep a position loaded from database
+    private static final long POSITION_EXPIRATION = 60_000L;
+
     private final NumberDataType<T> type;
     private final long limit;
     private final long update;
-    private final boolean indexMapping;
+    private final long snapshotInterval;
     private final boolean undefinedPosition;
+    // Limited tops keep some extra entries, so a user leaving the top doesn't require a database query every time
+    private final long capacity;
+
+    // Users sorted by position and users sorted by unique ID to get values
+    private final Comparator<Map.Entry<UUID, T>> positionOrder;
+    private final Comparator<Map.Entry<UUID, T>> userOrder = Map.Entry.comparingByKey();
+
+    // Readers only access the current snapshot, writers publish a new one after every change
+    private volatile Snapshot<T> snapshot;
+
+    private transient volatile long lastUpdate = -1;
+    private transient final Map<UUID, Object> toUpdate = new ConcurrentHashMap<>();
 
-    private Map<UUID, T> data = new HashMap<>();
-    private List<UUID> sorted = new ArrayList<>();
-    private Map<UUID, Integer> indexes = new HashMap<>();
+    // Top-K state, every user outside a limited top has a value lower or equal than the last entry
+    private transient DataClient client;
+    private transient String key;
+    private transient volatile boolean complete = true;
+    private transient final AtomicBoolean refilling = new AtomicBoolean();
+    private transient volatile long savedVersion = -1;
+    // Changes made while a full load is running, they're applied again over the loaded data
+    private transient int loading;
+    private transient final Map<UUID, Object> loadingChanges = new HashMap<>();
+    // Positions of users outside a limited top, loaded from database on demand
+    private transient final Cache<UUID, Integer> positions;
+    private transient final Set<UUID> loadingPositions = ConcurrentHashMap.newKeySet();
 
-    private transient long lastUpdate = -1;
-    private transient final Map<UUID, Object> toUpdate = new HashMap<>();
+    public TopEntry(@NotNull NumberDataType<T> type, long limit, long update, boolean undefinedPosition) {
+        this(type, limit, update, 0, undefinedPosition);
+    }
 
-    public TopEntry(@NotNull NumberDataType<T> type, long limit, long update, boolean indexMapping, boolean undefinedPosition) {
+    public TopEntry(@NotNull NumberDataType<T> type, long limit, long update, long snapshotInterval, boolean undefinedPosition) {
         this.type = type;
         this.limit = limit;
         this.update = update;
-        this.indexMapping = indexMapping;
+        this.snapshotInterval = snapshotInterval;
         this.undefinedPosition = undefinedPosition;
+        this.capacity = limit > 0 ? limit + Math.max(limit / 10, 10) : -1;
+        this.positionOrder = Map.Entry.<UUID, T>comparingByValue(type.reversed()).thenComparing(Map.Entry.comparingByKey());
+        this.snapshot = new Snapshot<>(RankTree.empty(this.positionOrder), RankTree.empty(this.userOrder), 0);
+        this.positions = CacheBuilder.newBuilder()
+                .maximumSize(10_000L)
+                .expireAfterWrite(Math.max(update, POSITION_EXPIRATION), TimeUnit.MILLISECONDS)
+                .build();
     }
 
     @NotNull
@@ -55,22 +105,39 @@ public class TopEntry<T extends Number> {
         return update;
     }
 
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public boolean isLimited() {
+        return limit > 0;
+    }
+
     public int getUndefined() {
-        return this.undefinedPosition ? -1 : this.sorted.size() + 1;
+        return getUndefined(this.snapshot);
     }
 
-    @NotNull
-    public List<UUID> getSorted() {
-        return sorted;
+    private int getUndefined(@NotNull Snapshot<T> snapshot) {
+        return this.undefinedPosition ? -1 : size(snapshot) + 1;
     }
 
-    @NotNull
-    public Map<UUID, Integer> getIndexes() {
-        return indexes;
+    public long getVersion() {
+        return this.snapshot.version;
+    }
+
+    public int size() {
+        return size(this.snapshot);
     }
 
-    public boolean isMappingIndexes() {
-        return indexMapping;
+    private int size(@NotNull Snapshot<T> snapshot) {
+        if (isLimited()) {
+            return (int) Math.min(snapshot.sorted.size(), this.limit);
+        }
+        return snapshot.sorted.size();
     }
 
     public boolean useUndefinedPosition() {
@@ -78,67 +145,114 @@ public class TopEntry<T extends Number> {
     }
 
     @Nullable
-    public UUID get(int position) {
-        if (position < 1 || position > this.sorted.size()) {
+    private Map.Entry<UUID, T> entry(int position) {
+        if (isLimited() && position > this.limit) {
             return null;
         }
-        return this.sorted.get(position - 1);
+        return this.snapshot.sorted.get(position - 1);
+    }
+
+    @Nullable
+    public UUID get(int position) {
+        final Map.Entry<UUID, T> entry = entry(position);
+        return entry == null ? null : entry.getKey();
     }
 
     public int get(@NotNull UUID user) {
-        if (this.indexMapping) {
-            final Integer index = this.indexes.get(user);
-            return index != null ? index + 1 : getUndefined();
-        } else {
-            final int index = this.sorted.indexOf(user);
-            return index >= 0 ? index + 1 : getUndefined();
+        final Snapshot<T> snapshot = this.snapshot;
+        final Map.Entry<UUID, T> entry = snapshot.values.find(key(user));
+        if (entry == null) {
+            return isLimited() ? position(user, null, snapshot) : getUndefined(snapshot);
         }
+        final int index = snapshot.sorted.rank(entry);
+        if (index < 0) {
+            return getUndefined(snapshot);
+        }
+        if (isLimited() && index >= this.limit) {
+            return position(user, entry.getValue(), snapshot);
+        }
+        return index + 1;
+    }
+
+    private int position(@NotNull UUID user, @Nullable T value, @NotNull Snapshot<T> snapshot) {
+        final Integer position = this.positions.getIfPresent(user);
+        if (position == null) {
+            // Undefined until the database provides the position
+            loadPosition(user, value);
+        }
+        return position == null || position < 0 ? getUndefined(snapshot) : position;
+    }
+
+    private void loadPosition(@NotNull UUID user, @Nullable T value) {
+        final DataClient client = this.client;
+        final String key = this.key;
+        if (client == null || !client.isTopPositionSupported() || user == DataUser.SERVER_ID || !this.loadingPositions.add(user)) {
+            return;
+        }
+        Task.runAsync(() -> {
+            try {
+                T userValue = value;
+                if (userValue == null) {
+                    final DataEntry<T> entry = client.loadDataEntry(user, key, this.type);
+                    userValue = entry == null ? null : entry.getValue();
+                }
+                int position = userValue == null ? -1 : client.loadTopPosition(key, userValue);
+                if (position > 0) {
+                    // The user is outside the top, so the position cannot be inside it
+                    position = (int) Math.min(Math.max(position, this.limit + 1), Integer.MAX_VALUE);
+                }
+                this.positions.put(user, position);
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot load top position of user " + user + " for data type '" + this.type.getId() + "'");
+            } finally {
+                this.loadingPositions.remove(user);
+            }
+        });
     }
 
     @Nullable
     public T value(int position) {
-        final UUID user = get(position);
-        if (user == null) {
-            return null;
-        }
-        return value(user);
+        final Map.Entry<UUID, T> entry = entry(position);
+        return entry == null ? null : entry.getValue();
     }
 
     @Nullable
     public T value(@NotNull UUID user) {
-        return this.data.getOrDefault(user, this.type.getDefaultValue());
+        final Map.Entry<UUID, T> entry = this.snapshot.values.find(key(user));
+        return entry == null ? this.type.getDefaultValue() : entry.getValue();
     }
 
     @Nullable
     public Object formatted(int position) {
-        return formatted(get(position));
+        final Map.Entry<UUID, T> entry = entry(position);
+        return format(entry == null ? this.type.getDefaultValue() : entry.getValue());
     }
 
     @Nullable
     public Object formatted(@Nullable UUID user) {
-        final T value;
-        if (user == null) {
-            value = this.type.getDefaultValue();
-        } else {
-            value = this.data.getOrDefault(user, this.type.getDefaultValue());
-        }
+        return format(user == null ? this.type.getDefaultValue() : value(user));
+    }
+
+    @Nullable
+    private Object format(@Nullable T value) {
         if (value == null) {
             return null;
         }
         return this.type.eval(value);
     }
 
+    @NotNull
+    private Map.Entry<UUID, T> key(@NotNull UUID user) {
+        return new AbstractMap.SimpleImmutableEntry<>(user, null);
+    }
+
     public void update(@NotNull UUID user, @Nullable Object value) {
         if (user == DataUser.SERVER_ID) {
             return;
         }
+        this.positions.invalidate(user);
         if (value == null) {
-            this.data.remove(user);
-            this.sorted.removeIf(user::equals);
-            if (this.indexMapping) {
-                this.indexes.remove(user);
-            }
-            this.toUpdate.remove(user);
+            removeUser(user);
         } else {
             // Delayed updates
             if (this.update > 0) {
@@ -159,76 +273,303 @@ public class TopEntry<T extends Number> {
         if (this.toUpdate.isEmpty()) {
             return;
         }
-        for (UUID user : new HashSet<>(this.toUpdate.keySet())) {
+        Snapshot<T> snapshot = this.snapshot;
+        for (UUID user : this.toUpdate.keySet()) {
             final Object value = this.toUpdate.remove(user);
             if (value == null) {
                 continue;
             }
-            updateUser(user, value);
+            record(user, value);
+            snapshot = update(snapshot, user, value);
         }
+        publish(snapshot);
     }
 
     private synchronized void updateUser(@NotNull UUID user, @NotNull Object value) {
+        record(user, value);
+        publish(update(this.snapshot, user, value));
+    }
+
+    private void record(@NotNull UUID user, @NotNull Object value) {
+        if (this.loading > 0) {
+            this.loadingChanges.put(user, value);
+        }
+    }
+
+    @NotNull
+    private Snapshot<T> update(@NotNull Snapshot<T> snapshot, @NotNull UUID user, @NotNull Object value) {
         final T parsedValue;
         try {
             parsedValue = this.type.load(value);
         } catch (Throwable t) {
             SaveData.logException(2, t, "Cannot update top entry for user '" + user + "' due the value '" + value + "' cannot be parsed as " + this.type.getTypeName());
-            return;
+            return snapshot;
+        }
+        final Map.Entry<UUID, T> oldEntry = snapshot.values.find(key(user));
+        if (oldEntry != null && this.type.compare(oldEntry.getValue(), parsedValue) == 0) {
+            return snapshot;
         }
-        this.data.put(user, parsedValue);
+        final Map.Entry<UUID, T> entry = new AbstractMap.SimpleImmutableEntry<>(user, parsedValue);
 
         // Update index
-        this.sorted.removeIf(user::equals);
-        int index = Collections.binarySearch(this.sorted, user, Comparator.comparing(this.data::get, this.type.reversed()));
-        if (index < 0) {
-            index = -index - 1;
+        RankTree<Map.Entry<UUID, T>> sorted = snapshot.sorted;
+        RankTree<Map.Entry<UUID, T>> values = snapshot.values;
+        if (oldEntry != null) {
+            sorted = sorted.remove(oldEntry);
+            values = values.remove(oldEntry);
         }
-        if (this.sorted.isEmpty()) {
-            this.sorted.add(user);
-        } else {
-            this.sorted.add(index, user);
+        if (isLimited() && !this.complete && sorted.size() >= this.capacity) {
+            // Users not loaded may have a higher value than this one, a top below capacity is refilled later
+            final Map.Entry<UUID, T> last = sorted.get(sorted.size() - 1);
+            if (last != null && this.type.compare(parsedValue, last.getValue()) <= 0) {
+                return new Snapshot<>(sorted, values, snapshot.version);
+            }
+        }
+        sorted = sorted.insert(entry);
+        values = values.insert(entry);
+        if (isLimited() && sorted.size() > this.capacity) {
+            final Map.Entry<UUID, T> last = sorted.get(sorted.size() - 1);
+            sorted = sorted.remove(last);
+            values = values.remove(last);
+            this.complete = false;
         }
+        return new Snapshot<>(sorted, values, snapshot.version);
+    }
 
-        if (this.indexMapping) {
-            this.indexes.put(user, index);
+    private synchronized void removeUser(@NotNull UUID user) {
+        this.toUpdate.remove(user);
+        record(user, REMOVED);
+        publish(remove(this.snapshot, user));
+    }
+
+    @NotNull
+    private Snapshot<T> remove(@NotNull Snapshot<T> snapshot, @NotNull UUID user) {
+        final Map.Entry<UUID, T> oldEntry = snapshot.values.find(key(user));
+        if (oldEntry == null) {
+            return snapshot;
+        }
+        return new Snapshot<>(snapshot.sorted.remove(oldEntry), snapshot.values.remove(oldEntry), snapshot.version);
+    }
+
+    private void publish(@NotNull Snapshot<T> snapshot) {
+        if (snapshot != this.snapshot) {
+            this.snapshot = new Snapshot<>(snapshot.sorted, snapshot.values, this.snapshot.version + 1);
+        }
+        if (isLimited() && !this.complete && snapshot.sorted.size() < this.limit) {
+            refill();
         }
     }
 
+    private void refill() {
+        if (this.client == null || !this.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        Task.runAsync(() -> {
+            try {
+                update(this.client, this.key);
+            } finally {
+                this.refilling.set(false);
+            }
+        });
+    }
+
     @ApiStatus.Internal
     public void update(@NotNull DataClient client, @NotNull String key) {
-        update(client.loadTopEntry(key, this.type));
+        this.client = client;
+        this.key = key;
+        synchronized (this) {
+            this.loading++;
+        }
+        try {
+            final Map<UUID, T> data = client.loadTopEntry(key, this.type, isLimited() ? (int) Math.min(this.capacity, Integer.MAX_VALUE) : -1);
+            if (data != null) {
+                update(data);
+            }
+        } finally {
+            synchronized (this) {
+                if (--this.loading == 0) {
+                    this.loadingChanges.clear();
+                }
+            }
+        }
     }
 
-    public void update(@NotNull Map<UUID, T> data) {
-        if (data.isEmpty()) {
-            this.data = new HashMap<>();
-            this.sorted = new ArrayList<>();
-            this.indexes = new HashMap<>();
-            return;
+    @ApiStatus.Internal
+    public void update(@NotNull DataClient client, @NotNull String key, long since) {
+        this.client = client;
+        this.key = key;
+        // Users of loaded top are checked too, so deleted users are removed
+        final List<UUID> users = new ArrayList<>();
+        for (Map.Entry<UUID, T> entry : this.snapshot.values.toList()) {
+            users.add(entry.getKey());
+        }
+        final Map<UUID, T> data = client.loadTopDelta(key, this.type, since, users);
+        if (data == null) {
+            update(client, key);
+        } else {
+            merge(data);
+        }
+    }
+
+    /**
+     * Apply the provided changes into the current top, a null value means the user was removed.
+     *
+     * @param data the changed users.
+     */
+    public synchronized void merge(@NotNull Map<UUID, T> data) {
+        Snapshot<T> snapshot = this.snapshot;
+        for (Map.Entry<UUID, T> entry : data.entrySet()) {
+            if (entry.getKey() == DataUser.SERVER_ID) {
+                continue;
+            }
+            if (entry.getValue() == null) {
+                snapshot = remove(snapshot, entry.getKey());
+            } else {
+                snapshot = update(snapshot, entry.getKey(), entry.getValue());
+            }
         }
+        publish(snapshot);
+    }
+
+    public synchronized void update(@NotNull Map<UUID, T> data) {
+        this.complete = true;
+        this.positions.invalidateAll();
+        Snapshot<T> snapshot = data.isEmpty() ? new Snapshot<>(RankTree.empty(this.positionOrder), RankTree.empty(this.userOrder), 0) : load(data);
+        // The loaded data may be older than the changes made while it was loading
+        for (Map.Entry<UUID, Object> entry : this.loadingChanges.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                snapshot = remove(snapshot, entry.getKey());
+            } else {
+                snapshot = update(snapshot, entry.getKey(), entry.getValue());
+            }
+        }
+        publish(snapshot);
+    }
+
+    @NotNull
+    private Snapshot<T> load(@NotNull Map<UUID, T> data) {
         var stream = data.entrySet().stream()
-                .filter(entry -> entry.getKey() != DataUser.SERVER_ID)
-                .sorted(Map.Entry.comparingByValue(this.type.reversed()));
-        if (this.limit > 0) {
-            stream = stream.limit(this.limit);
-        }
-        final List<UUID> sorted = stream.map(Map.Entry::getKey).collect(Collectors.toList());
-        if (this.indexMapping) {
-            final Map<UUID, Integer> map = new HashMap<>();
-            for (int i = 0; i < sorted.size(); i++) {
-                map.put(sorted.get(i), i);
+                .filter(entry -> entry.getKey() != DataUser.SERVER_ID && entry.getValue() != null)
+                .map(entry -> (Map.Entry<UUID, T>) new AbstractMap.SimpleImmutableEntry<UUID, T>(entry))
+                .sorted(this.positionOrder);
+        if (isLimited()) {
+            // Only the users inside capacity are kept
+            stream = stream.limit(this.capacity + 1);
+        }
+        List<Map.Entry<UUID, T>> sorted = stream.collect(Collectors.toList());
+        if (isLimited() && sorted.size() >= this.capacity) {
+            // A full load cannot tell if more users exist outside the top
+            this.complete = false;
+            if (sorted.size() > this.capacity) {
+                sorted = sorted.subList(0, (int) this.capacity);
             }
-            this.indexes = map;
         }
-        this.data = data;
-        this.sorted = sorted;
+        final List<Map.Entry<UUID, T>> values = sorted.stream().sorted(this.userOrder).collect(Collectors.toList());
+        return new Snapshot<>(RankTree.of(this.positionOrder, sorted), RankTree.of(this.userOrder, values), 0);
     }
 
-    public void clear() {
-        this.data.clear();
-        this.sorted.clear();
-        this.indexes.clear();
+    public synchronized void clear() {
         this.toUpdate.clear();
+        this.positions.invalidateAll();
+        this.complete = true;
+        publish(new Snapshot<>(RankTree.empty(this.positionOrder), RankTree.empty(this.userOrder), 0));
+    }
+
+    /**
+     * Save the current top into a binary file, only if the top has changed since last save.
+     *
+     * @param file the file to save into.
+     * @return     true if the file was saved.
+     */
+    public boolean saveSnapshot(@NotNull Path file) {
+        final Snapshot<T> snapshot = this.snapshot;
+        final boolean complete = this.complete;
+        if (snapshot.version == this.savedVersion && Files.exists(file)) {
+            return false;
+        }
+        final long time = System.currentTimeMillis();
+        final List<Map.Entry<UUID, T>> sorted = snapshot.sorted.toList();
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeByte(SNAPSHOT_VERSION);
+                out.writeLong(time);
+                out.writeBoolean(complete);
+                out.writeInt(sorted.size());
+                int rank = 1;
+                for (Map.Entry<UUID, T> entry : sorted) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeUTF(String.valueOf(entry.getValue()));
+                    out.writeInt(rank++);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot save top snapshot for data type '" + this.type.getId() + "'");
+            return false;
+        }
+        this.savedVersion = snapshot.version;
+        SaveData.log(4, "Saved top snapshot for data type '" + this.type.getId() + "' with " + sorted.size() + " entries");
+        return true;
+    }
+
+    /**
+     * Load a top from a binary file saved with {@link #saveSnapshot(Path)}.
+     *
+     * @param file the file to load.
+     * @return     the time in milliseconds when the snapshot was saved, or -1 if it cannot be loaded.
+     */
+    public long loadSnapshot(@NotNull Path file) {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        final long time;
+        final boolean complete;
+        final Map<UUID, T> data = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+                SaveData.log(2, "The top snapshot file " + file.getFileName() + " has an invalid format, ignoring it...");
+                return -1;
+            }
+            time = in.readLong();
+            complete = in.readBoolean();
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                final UUID user = new UUID(in.readLong(), in.readLong());
+                final String value = in.readUTF();
+                in.readInt(); // Rank is given by order
+                try {
+                    data.put(user, this.type.load(value));
+                } catch (Throwable ignored) { }
+            }
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot load top snapshot for data type '" + this.type.getId() + "'");
+            return -1;
+        }
+        synchronized (this) {
+            update(data);
+            if (!complete) {
+                this.complete = false;
+            }
+            this.savedVersion = this.snapshot.version;
+        }
+        SaveData.log(4, "Loaded top snapshot for data type '" + this.type.getId() + "' with " + data.size() + " entries");
+        return time;
+    }
+
+    private static final class Snapshot<T> {
+
+        private final RankTree<Map.Entry<UUID, T>> sorted;
+        private final RankTree<Map.Entry<UUID, T>> values;
+        private final long version;
+
+        Snapshot(@NotNull RankTree<Map.Entry<UUID, T>> sorted, @NotNull RankTree<Map.Entry<UUID, T>> values, long version) {
+            this.sorted = sorted;
+            this.values = values;
+            this.version = version;
+        }
     }
 }
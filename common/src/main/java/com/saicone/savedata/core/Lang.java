@@ -16,6 +16,11 @@ public class Lang implements LangSupplier {
     public static final Path NO_PERMISSION = Path.of("plugin.no-permission");
     public static final Path COMMAND_HELP = Path.of("command.help");
     public static final Path COMMAND_RELOAD = Path.of("command.reload");
+    public static final Path COMMAND_MIGRATE_START = Path.of("command.migrate.start");
+    public static final Path COMMAND_MIGRATE_CONVERT = Path.of("command.migrate.convert");
+    public static final Path COMMAND_MIGRATE_DONE = Path.of("command.migrate.done");
+    public static final Path COMMAND_MIGRATE_ERROR = Path.of("command.migrate.error");
+    public static final Path COMMAND_MIGRATE_ERROR_TYPE = Path.of("command.migrate.error-type");
     public static final Path COMMAND_DATA_GET = Path.of("command.data.get");
     public static final Path COMMAND_DATA_CONTAINS = Path.of("command.data.contains");
     public static final Path COMMAND_DATA_EDIT = Path.of("command.data.edit");
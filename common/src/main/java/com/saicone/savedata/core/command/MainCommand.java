@@ -7,6 +7,9 @@ import com.saicone.savedata.api.data.DataOperator;
 import com.saicone.savedata.api.data.DataResult;
 import com.saicone.savedata.api.data.DataUser;
 import com.saicone.savedata.core.Lang;
+import com.saicone.savedata.core.data.Database;
+import com.saicone.savedata.module.data.client.FileClient;
+import com.saicone.savedata.module.data.file.FileType;
 import com.saicone.savedata.util.DurationFormatter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -14,6 +17,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -23,6 +27,7 @@ public interface MainCommand {
 
     List<String> TYPE = List.of(
             "reload",
+            "migrate",
             "player",
             "players",
             "global",
@@ -53,6 +58,51 @@ public interface MainCommand {
             }
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("migrate")) {
+            if (args.length < 2) {
+                Lang.COMMAND_HELP.sendTo(sender, cmd);
+                return;
+            }
+            final Database database = SaveData.get().getDataCore().getDatabases().get(args[1]);
+            if (database == null) {
+                Lang.COMMAND_ERROR_DATABASE.sendTo(sender, args[1]);
+                return;
+            }
+            if (!(database.getClient() instanceof FileClient)) {
+                Lang.COMMAND_MIGRATE_ERROR.sendTo(sender, args[1]);
+                return;
+            }
+            final FileClient client = (FileClient) database.getClient();
+            final long before = System.currentTimeMillis();
+            final CompletableFuture<Integer> future;
+            if (args.length > 2) {
+                // Convert from other file type
+                final FileType from = FileType.of(args[2], null);
+                if (from == null) {
+                    Lang.COMMAND_MIGRATE_ERROR_TYPE.sendTo(sender, args[2]);
+                    return;
+                }
+                Lang.COMMAND_MIGRATE_CONVERT.sendTo(sender, args[1], from.name(), client.getType().name());
+                future = client.convertFrom(from, 500, 50L);
+            } else {
+                if (!client.isSharded()) {
+                    Lang.COMMAND_MIGRATE_ERROR.sendTo(sender, args[1]);
+                    return;
+                }
+                Lang.COMMAND_MIGRATE_START.sendTo(sender, args[1]);
+                future = client.migrateLayout(500, 50L);
+            }
+            future.whenComplete((moved, error) -> {
+                if (error != null) {
+                    SaveData.logException(2, error, "Cannot migrate the files of database '" + args[1] + "'");
+                    return;
+                }
+                final long time = System.currentTimeMillis() - before;
+                Lang.COMMAND_MIGRATE_DONE.sendTo(sender, args[1], moved, time);
+            });
+            return;
+        }
+
         SaveData.log(4, "Check");
         if (args.length < 4 || !TYPE.contains(args[0].toLowerCase())) {
             Lang.COMMAND_HELP.sendTo(sender, cmd);
@@ -123,7 +173,7 @@ public interface MainCommand {
             SaveData.get().getDataCore().userValue((UUID) uniqueId, operator, database, dataType, value.getLeft(), userParser, SaveData.get().getLang().getLanguageFor(sender)).thenAccept(result -> {
                 if (operator == DataOperator.GET) {
                     Lang.COMMAND_DATA_GET.sendTo(sender, uniqueId == DataUser.SERVER_ID ? "GLOBAL" : args[1], database, dataType, result);
-                } else if (result instanceof Boolean) {
+                } else if (result instanceof Boolean || (operator == DataOperator.COUNT && result instanceof Integer)) {
                     Lang.COMMAND_DATA_CONTAINS.sendTo(sender, result);
                 } else if (result instanceof DataResult) {
                     Lang.COMMAND_DATA_ERROR_VALUE.sendTo(sender, value.getLeft());
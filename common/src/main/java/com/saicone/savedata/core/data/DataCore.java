@@ -1,5 +1,8 @@
 package com.saicone.savedata.core.data;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.saicone.mcode.module.task.Task;
 import com.saicone.mcode.util.Dual;
 import com.saicone.savedata.SaveData;
@@ -9,8 +12,12 @@ import com.saicone.savedata.api.data.DataOperator;
 import com.saicone.savedata.api.data.DataResult;
 import com.saicone.savedata.api.data.DataType;
 import com.saicone.savedata.api.data.DataUser;
+import com.saicone.savedata.api.data.entry.CollectionDataEntry;
+import com.saicone.savedata.api.data.entry.NumberDataEntry;
 import com.saicone.savedata.api.data.type.CollectionDataType;
+import com.saicone.savedata.api.data.type.NumberDataType;
 import com.saicone.savedata.api.data.type.StringDataType;
+import com.saicone.savedata.api.data.type.collection.BitFieldDataType;
 import com.saicone.savedata.api.top.TopEntry;
 import com.saicone.savedata.util.DurationFormatter;
 import com.saicone.settings.Settings;
@@ -30,18 +37,61 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class DataCore {
 
     private final Executor executor = Task::async;
+    private final UserMailbox userMailbox = new UserMailbox(executor);
 
     private final Map<String, Database> databases = new HashMap<>();
     private final Map<String, DataType<?>> dataTypes = new HashMap<>();
     private final Map<UUID, DataUser> userData = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<DataUser>> loadingUsers = new ConcurrentHashMap<>();
+
+    private Cache<UUID, DataUser> transitiveUsers = CacheBuilder.newBuilder().build();
+    private final LongAdder transitiveHits = new LongAdder();
+    private final LongAdder transitiveMisses = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+    private ExpirationWheel expirationWheel;
 
     public void onLoad() {
+        if (this.scheduler == null || this.scheduler.isShutdown()) {
+            this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+                final Thread thread = new Thread(runnable, "SaveData Scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // Load transitive users cache
+        final long transitiveSize = SaveData.settings().getIgnoreCase("data", "transitivecache", "maxsize").asLong(1000L);
+        final long transitiveExpiration = DurationFormatter.format(SaveData.settings().getIgnoreCase("data", "transitivecache", "expiration").asString("1 MINUTES"), TimeUnit.MILLISECONDS);
+        this.transitiveUsers.invalidateAll();
+        this.transitiveUsers = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0L, transitiveSize))
+                .expireAfterWrite(Math.max(0L, transitiveExpiration), TimeUnit.MILLISECONDS)
+                .<UUID, DataUser>removalListener(notification -> {
+                    // The same instance is put again after every transitive edit, so it's only unloaded if it's replaced by other one
+                    if (notification.getCause() == RemovalCause.REPLACED && this.transitiveUsers.asMap().get(notification.getKey()) == notification.getValue()) {
+                        return;
+                    }
+                    if (notification.getValue() != null && userData.get(notification.getKey()) != notification.getValue()) {
+                        cancel(notification.getValue());
+                    }
+                })
+                .build();
+
+        // Load expiration timer
+        final long expirationTick = DurationFormatter.format(SaveData.settings().getIgnoreCase("data", "expiration", "tick").asString("1 SECONDS"), TimeUnit.MILLISECONDS);
+        this.expirationWheel = new ExpirationWheel(Math.max(50L, expirationTick), 512, this::expire);
+
         // Load data types
         loadDataTypes(SaveData.get().getFolder().resolve("datatypes"));
         SaveData.log(3, "Loaded " + this.dataTypes.size() + " data type" + (this.dataTypes.size() == 1 ? "" : "s"));
@@ -53,7 +103,7 @@ public class DataCore {
                 final MapNode node = entry.getValue().asMapNode();
                 if (node.getIgnoreCase("enabled").asBoolean(true)) {
                     final String type = node.getIgnoreCase("type").asString();
-                    if (type == null || (!type.equalsIgnoreCase("FILE") && !type.equalsIgnoreCase("SQL"))) {
+                    if (type == null || (!type.equalsIgnoreCase("FILE") && !type.equalsIgnoreCase("SQL") && !type.equalsIgnoreCase("LOG"))) {
                         continue;
                     }
                     final Database database = new Database(entry.getKey(), type);
@@ -73,6 +123,9 @@ public class DataCore {
                                 return;
                             }
 
+                            transitiveUsers.invalidate(user);
+                            database.addKnownUser(user);
+
                             if (lines.length > 2) {
                                 final TopEntry<?> top = database.getTop(key);
                                 if (top != null) {
@@ -84,10 +137,15 @@ public class DataCore {
                                 return;
                             }
                             final DataEntry<?> dataEntry = database.getClient().loadDataEntry(user, key, dataTypes.get(key));
+                            final DataEntry<?> oldEntry = userData.get(user).getEntry(entry.getKey(), key);
+                            if (oldEntry != null) {
+                                expirationWheel.cancel(oldEntry);
+                            }
                             if (dataEntry == null) {
                                 userData.get(user).removeEntry(entry.getKey(), key);
                             } else {
                                 userData.get(user).setEntry(entry.getKey(), dataEntry);
+                                expirationWheel.schedule(user, entry.getKey(), dataEntry);
                             }
                         });
                     }
@@ -107,9 +165,20 @@ public class DataCore {
             }
         }
         loadUser(DataUser.SERVER_ID);
+        // Loaded users are kept across reloads, so their temporary data is tracked by the new wheel
+        for (DataUser user : userData.values()) {
+            for (DataNode node : user.getNodes().values()) {
+                schedule(user.getUniqueId(), node);
+            }
+        }
+        this.expirationWheel.start(this.scheduler);
     }
 
     public void onDisable() {
+        if (this.expirationWheel != null) {
+            this.expirationWheel.stop();
+            this.expirationWheel.clear();
+        }
         saveAllUsers();
         for (Map.Entry<String, Database> entry : databases.entrySet()) {
             try {
@@ -118,6 +187,9 @@ public class DataCore {
                 SaveData.logException(2, t, "An error occurred while disabling database '" + entry.getKey() + "'");
             }
         }
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+        }
     }
 
     public void onReload() {
@@ -136,12 +208,31 @@ public class DataCore {
         return dataTypes;
     }
 
+    @NotNull
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    @NotNull
+    public ExpirationWheel getExpirationWheel() {
+        return expirationWheel;
+    }
+
+    @NotNull
+    public UserMailbox getUserMailbox() {
+        return userMailbox;
+    }
+
     @NotNull
     public CompletableFuture<DataUser> getUser(@NotNull UUID uniqueId) {
         final DataUser user = userData.get(uniqueId);
         if (user != null) {
             return CompletableFuture.completedFuture(user);
         }
+        final CompletableFuture<DataUser> loading = loadingUsers.get(uniqueId);
+        if (loading != null) {
+            return loading;
+        }
         return CompletableFuture.supplyAsync(() -> loadUser(uniqueId), executor);
     }
 
@@ -157,6 +248,16 @@ public class DataCore {
         if (user != null) {
             return CompletableFuture.completedFuture(user);
         }
+        final CompletableFuture<DataUser> loading = loadingUsers.get(uniqueId);
+        if (loading != null) {
+            return loading;
+        }
+        final DataUser cached = transitiveUsers.getIfPresent(uniqueId);
+        if (cached != null && isLoaded(cached, predicate)) {
+            transitiveHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        transitiveMisses.increment();
         SaveData.log(4, "The user " + uniqueId + " doesn't exist, so it will be get as transitive object");
         return CompletableFuture.supplyAsync(() -> {
             final DataUser loaded;
@@ -165,18 +266,50 @@ public class DataCore {
                 loaded = userData.get(uniqueId);
             } else {
                 SaveData.log(4, "Loading user " + uniqueId + "...");
-                loaded = new DataUser(uniqueId);
+                loaded = transitiveUsers.asMap().computeIfAbsent(uniqueId, DataUser::new);
+                // Only the missing databases are loaded, the cached user may be shared by other predicates
                 for (Map.Entry<String, Database> entry : databases.entrySet()) {
-                    if (!predicate.test(entry.getValue())) {
+                    if (!predicate.test(entry.getValue()) || loaded.getNode(entry.getKey()) != null) {
                         continue;
                     }
-                    loaded.setNode(entry.getKey(), entry.getValue().getClient().loadData(uniqueId, key -> (DataType<Object>) dataTypes.get(key)));
+                    entry.getValue().flush(uniqueId);
+                    final DataNode node = entry.getValue().loadData(uniqueId, key -> (DataType<Object>) dataTypes.get(key));
+                    if (node != null) {
+                        loaded.setNode(entry.getKey(), node);
+                        schedule(uniqueId, node);
+                    }
                 }
             }
             return loaded;
         }, executor);
     }
 
+    private boolean isLoaded(@NotNull DataUser user, @NotNull Predicate<Database> predicate) {
+        for (Map.Entry<String, Database> entry : databases.entrySet()) {
+            if (predicate.test(entry.getValue()) && user.getNode(entry.getKey()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    public Cache<UUID, DataUser> getTransitiveUsers() {
+        return transitiveUsers;
+    }
+
+    public long getTransitiveHits() {
+        return transitiveHits.sum();
+    }
+
+    public long getTransitiveMisses() {
+        return transitiveMisses.sum();
+    }
+
+    public void invalidateTransitiveUser(@NotNull UUID uniqueId) {
+        transitiveUsers.invalidate(uniqueId);
+    }
+
     @Nullable
     public DataUser getUserOrNull(@NotNull UUID uniqueId) {
         return userData.get(uniqueId);
@@ -206,7 +339,7 @@ public class DataCore {
                 if (type == null) {
                     return DataResult.INVALID_TYPE;
                 }
-                entry = new DataEntry<>(type);
+                entry = type.createEntry(null, null, null);
                 user.setEntry(database, entry);
             }
             switch (operator) {
@@ -231,6 +364,21 @@ public class DataCore {
                         return entry.getType().test(entry.getValue(), value);
                     }
                     break;
+                case COUNT:
+                    if (entry.getValue() == null) {
+                        return 0;
+                    } else if (entry.getType() instanceof BitFieldDataType) {
+                        try {
+                            return ((BitFieldDataType) entry.getType()).count((BitSet) entry.getValue(), value);
+                        } catch (Throwable t) {
+                            return DataResult.INVALID_VALUE;
+                        }
+                    } else if (entry.getValue() instanceof Collection) {
+                        return ((Collection<?>) entry.getValue()).size();
+                    } else if (entry.getValue() instanceof String) {
+                        return ((String) entry.getValue()).length();
+                    }
+                    break;
                 case EXPIRY:
                     if (entry.isTemporary()) {
                         final Duration duration = Duration.between(Instant.now(), Instant.ofEpochMilli(entry.getExpiration()));
@@ -259,18 +407,22 @@ public class DataCore {
         if (!operator.isUpdate()) {
             return CompletableFuture.completedFuture(DataResult.INVALID_OPERATOR);
         }
-        return getTransitiveUser(uniqueId, db -> db.getName().equals(database)).thenApply(user -> {
+        // Operations are applied in order by user mailbox, so concurrent updates of the same user never overlap
+        return getTransitiveUser(uniqueId, db -> db.getName().equals(database)).thenCompose(user -> userMailbox.<Object>submit(uniqueId, () -> {
             DataEntry<Object> entry = (DataEntry<Object>) user.getEntry(database, dataType);
             if (entry == null) {
                 final DataType<Object> type = (DataType<Object>) dataTypes.get(dataType);
                 if (type == null) {
                     return DataResult.INVALID_TYPE;
                 }
-                entry = new DataEntry<>(type);
+                entry = type.createEntry(null, null, null);
                 user.setEntry(database, entry);
             }
 
+            final Object oldValue = entry.getValue();
             final Object result;
+            boolean applied = false;
+            Number operand = null;
             if (operator == DataOperator.DELETE) {
                 result = null;
             } else {
@@ -285,8 +437,26 @@ public class DataCore {
                     SaveData.logException(4, t, "Cannot parse provided value");
                     return DataResult.INVALID_VALUE;
                 }
+                if (!operator.isSet() && entry.getType() instanceof NumberDataType && providedValue instanceof Number && databases.get(database).isAtomicNumbers()) {
+                    // Databases with atomic operations apply the operand over the saved value, any other database merges the saves
+                    operand = (Number) providedValue;
+                }
                 if (operator.isSet()) {
                     result = providedValue;
+                } else if (entry instanceof NumberDataEntry && providedValue instanceof Number) {
+                    // Primitive arithmetic
+                    if (!((NumberDataEntry<?>) (DataEntry<?>) entry).apply(operator, (Number) providedValue)) {
+                        return DataResult.CANNOT_MODIFY;
+                    }
+                    result = entry.getValue();
+                    applied = true;
+                } else if (entry instanceof CollectionDataEntry) {
+                    // Element changes are recorded, so the database can write only the change
+                    if (!((CollectionDataEntry<Object, Object>) (DataEntry<?>) entry).apply(operator, providedValue)) {
+                        return DataResult.CANNOT_MODIFY;
+                    }
+                    result = entry.getValue();
+                    applied = true;
                 } else {
                     final Object entryValue = entry.getValue() == null ? entry.getType().getDefaultValue() : entry.getValue();
                     if (entryValue == null) {
@@ -314,15 +484,27 @@ public class DataCore {
                     }
                 }
             }
-            final Object oldValue = entry.getValue();
-            entry.setValue(result);
+            if (!applied) {
+                entry.setValue(result);
+            }
             if (expiration != null) {
                 entry.setExpiration(expiration);
             }
+            expirationWheel.schedule(uniqueId, database, entry);
             final DataEntry<Object> finalEntry = entry;
-            Task.runAsync(() -> databases.get(database).saveDataEntry(uniqueId, finalEntry));
+            final Number finalOperand = operand;
+            if (finalOperand != null) {
+                userMailbox.execute(uniqueId, () -> databases.get(database).applyDataEntry(uniqueId, finalEntry, operator, finalOperand));
+            } else {
+                // Queued saves of the same entry are merged, the latest value is written once
+                userMailbox.save(uniqueId, database + ':' + dataType, () -> databases.get(database).saveDataEntry(uniqueId, finalEntry));
+            }
+            if (!userData.containsKey(uniqueId)) {
+                // The transitive user was edited in place, so the cached instance holds the latest value
+                transitiveUsers.put(uniqueId, user);
+            }
             return Dual.of(oldValue, result);
-        });
+        }));
     }
 
     protected void loadDataTypes(@NotNull Path path) {
@@ -391,7 +573,7 @@ public class DataCore {
         final Object max = node.getRegex("(?i)maximum").getValue();
         if (max != null) {
             try {
-                builder.min(builder.parser().parse(max));
+                builder.max(builder.parser().parse(max));
             } catch (Throwable t) {
                 SaveData.logException(2, t, "Cannot parse '" + max + "' as required data type '" + builder.id() + "'");
             }
@@ -401,26 +583,120 @@ public class DataCore {
     }
 
     @NotNull
-    @SuppressWarnings("unchecked")
-    public synchronized DataUser loadUser(@NotNull UUID uniqueId) {
-        if (userData.containsKey(uniqueId)) {
+    public DataUser loadUser(@NotNull UUID uniqueId) {
+        DataUser user = userData.get(uniqueId);
+        if (user != null) {
             SaveData.log(4, "The user " + uniqueId + " doesn't need any load, it exists on cache");
-            return userData.get(uniqueId);
+            return user;
+        }
+        // Only one thread loads the user, any other call with the same ID waits for the same result
+        final CompletableFuture<DataUser> future = new CompletableFuture<>();
+        final CompletableFuture<DataUser> loading = loadingUsers.putIfAbsent(uniqueId, future);
+        if (loading != null) {
+            SaveData.log(4, "The user " + uniqueId + " is already being loaded, waiting for it...");
+            return loading.join();
         }
+        try {
+            user = userData.get(uniqueId);
+            if (user == null) {
+                transitiveUsers.invalidate(uniqueId);
+                user = loadUserData(uniqueId);
+                SaveData.log(4, "Saving user " + uniqueId + " into cache...");
+                userData.put(uniqueId, user);
+            }
+            future.complete(user);
+            return user;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            loadingUsers.remove(uniqueId, future);
+        }
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    protected DataUser loadUserData(@NotNull UUID uniqueId) {
         final DataUser user = new DataUser(uniqueId);
         for (Map.Entry<String, Database> entry : databases.entrySet()) {
-            final DataNode node = entry.getValue().getClient().loadData(uniqueId, key -> (DataType<Object>) dataTypes.get(key));
+            entry.getValue().flush(uniqueId);
+            entry.getValue().getClient().pinUser(uniqueId);
+            final DataNode node = entry.getValue().loadData(uniqueId, key -> (DataType<Object>) dataTypes.get(key), true);
             if (node == null) {
                 SaveData.log(2, "Cannot load data node for player " + uniqueId + " from database '" + entry.getKey() + "'");
                 continue;
             }
             user.setNode(entry.getKey(), node);
+            schedule(uniqueId, node);
         }
-        SaveData.log(4, "Saving user " + uniqueId + " into cache...");
-        userData.put(uniqueId, user);
         return user;
     }
 
+    private void schedule(@NotNull UUID uniqueId, @NotNull DataNode node) {
+        for (DataEntry<?> entry : node.values()) {
+            if (entry.isTemporary()) {
+                expirationWheel.schedule(uniqueId, node.getDatabase(), entry);
+            }
+        }
+    }
+
+    private void cancel(@NotNull DataUser user) {
+        if (expirationWheel == null) {
+            return;
+        }
+        for (DataNode node : user.getNodes().values()) {
+            for (DataEntry<?> entry : node.values()) {
+                expirationWheel.cancel(entry);
+            }
+        }
+    }
+
+    private void expire(@NotNull List<ExpirationWheel.Timeout> timeouts) {
+        // Group by user and database, so every database deletes the expired entries of a user in a single batch
+        final Map<UUID, List<ExpirationWheel.Timeout>> expired = new HashMap<>();
+        for (ExpirationWheel.Timeout timeout : timeouts) {
+            expired.computeIfAbsent(timeout.getUser(), key -> new ArrayList<>()).add(timeout);
+        }
+        for (Map.Entry<UUID, List<ExpirationWheel.Timeout>> entry : expired.entrySet()) {
+            // Expired entries are cleared in the user mailbox, so any update made after expiration is never deleted
+            userMailbox.execute(entry.getKey(), () -> expire(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    private void expire(@NotNull UUID uniqueId, @NotNull List<ExpirationWheel.Timeout> timeouts) {
+        final Map<String, List<DataEntry<?>>> expired = new HashMap<>();
+        for (ExpirationWheel.Timeout timeout : timeouts) {
+            final DataEntry<?> entry = timeout.getEntry();
+            synchronized (entry) {
+                if (!Objects.equals(entry.getExpiration(), timeout.getExpiration()) || entry.getValue() == null) {
+                    continue;
+                }
+                entry.setValue(null);
+            }
+            expired.computeIfAbsent(timeout.getDatabase(), key -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<DataEntry<?>>> entry : expired.entrySet()) {
+            final Database database = databases.get(entry.getKey());
+            if (database == null) {
+                continue;
+            }
+            final List<DataEntry<?>> entries = new ArrayList<>();
+            for (DataEntry<?> dataEntry : entry.getValue()) {
+                synchronized (dataEntry) {
+                    // Check again, the entry may be modified outside the user mailbox
+                    if (dataEntry.getValue() == null) {
+                        entries.add(dataEntry);
+                    }
+                }
+            }
+            if (entries.isEmpty()) {
+                continue;
+            }
+            SaveData.log(4, "Deleting " + entries.size() + " expired data entr" + (entries.size() == 1 ? "y" : "ies") + " of user " + uniqueId + " on database '" + entry.getKey() + "'");
+            database.deleteDataEntries(Map.of(uniqueId, entries));
+        }
+    }
+
     public void saveAllUsers() {
         for (Map.Entry<UUID, DataUser> entry : userData.entrySet()) {
             saveUser(entry.getValue());
@@ -432,6 +708,11 @@ public class DataCore {
         if (user != null) {
             saveUser(user);
             userData.remove(uniqueId);
+            for (Database database : databases.values()) {
+                database.getClient().unpinUser(uniqueId);
+            }
+            // Keep the recently saved data for offline lookups, its expirations are cancelled once it's removed from the cache
+            transitiveUsers.put(uniqueId, user);
         }
     }
 
@@ -443,6 +724,10 @@ public class DataCore {
                 SaveData.log(2, "The user " + user.getUniqueId() + " contains unknown database name: " + entry.getKey());
                 continue;
             }
+            database.flush(user.getUniqueId());
+            if (!entry.getValue().isEmpty()) {
+                database.addKnownUser(user.getUniqueId());
+            }
             database.getClient().saveData(user.getUniqueId(), entry.getValue());
         }
     }
@@ -451,5 +736,6 @@ public class DataCore {
         databases.clear();
         dataTypes.clear();
         userData.clear();
+        transitiveUsers.invalidateAll();
     }
 }
@@ -1,8 +1,15 @@
 package com.saicone.savedata.core.data;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.saicone.mcode.module.task.Task;
 import com.saicone.savedata.SaveData;
 import com.saicone.savedata.api.SaveDataAPI;
 import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataNode;
+import com.saicone.savedata.api.data.DataOperator;
 import com.saicone.savedata.api.data.DataType;
 import com.saicone.savedata.api.data.type.NumberDataType;
 import com.saicone.savedata.api.top.TopEntry;
@@ -10,24 +17,50 @@ import com.saicone.savedata.core.delivery.Messenger;
 import com.saicone.savedata.module.data.DataClient;
 import com.saicone.savedata.module.data.client.FileClient;
 import com.saicone.savedata.module.data.client.HikariClient;
+import com.saicone.savedata.module.data.client.LogClient;
+import com.saicone.savedata.module.data.sql.SqlType;
 import com.saicone.savedata.util.DurationFormatter;
 import com.saicone.settings.SettingsNode;
 import com.saicone.settings.node.MapNode;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class Database {
 
+    private static final Funnel<UUID> USER_FUNNEL = (user, into) -> into.putLong(user.getMostSignificantBits()).putLong(user.getLeastSignificantBits());
+
     private final String type;
     private final DataClient client;
 
     private final Map<String, TopEntry<?>> tops = new HashMap<>();
+    private final List<ScheduledFuture<?>> snapshotTasks = new ArrayList<>();
     private Messenger messenger;
+    private WriteBuffer writeBuffer;
+
+    // Expired rows purge
+    private long purgeInterval;
+    private int purgeBatchSize;
+    private long purgeBatchDelay;
+    private volatile ScheduledFuture<?> purgeTask;
+
+    // Known users filter
+    private long expectedUsers;
+    private double falsePositive;
+    private BloomFilter<UUID> knownUsers;
+    private Cache<UUID, Boolean> unknownUsers;
+    private volatile boolean knownUsersReady;
+    private final LongAdder skippedLookups = new LongAdder();
 
     private transient boolean enabled = false;
 
@@ -37,6 +70,8 @@ public class Database {
             this.client = new FileClient(databaseName, SaveData.get().getFolder());
         } else if (type.equalsIgnoreCase("SQL")) {
             this.client = new HikariClient(databaseName);
+        } else if (type.equalsIgnoreCase("LOG")) {
+            this.client = new LogClient(databaseName, SaveData.get().getFolder());
         } else {
             throw new IllegalArgumentException("The database type " + type + " doesn't exist");
         }
@@ -56,14 +91,14 @@ public class Database {
                 final DataType<?> type;
                 final long limit;
                 final long update;
-                final boolean indexMapping;
+                final long snapshot;
                 final boolean undefinedPosition;
                 if (node.isObject()) {
                     key = node.asString("");
                     type = SaveDataAPI.getDataType(key);
                     limit = -1;
                     update = 0;
-                    indexMapping = false;
+                    snapshot = 0;
                     undefinedPosition = true;
                 } else if (!node.isMap()) {
                     continue;
@@ -73,18 +108,48 @@ public class Database {
                     type = SaveDataAPI.getDataType(key);
                     limit = map.getIgnoreCase("limit").asLong(-1L);
                     update = DurationFormatter.format(map.getIgnoreCase("update").asString("0"), TimeUnit.MILLISECONDS);
-                    indexMapping = map.getRegex("(?i)index-?mapping").asBoolean(false);
+                    snapshot = DurationFormatter.format(map.getIgnoreCase("snapshot").asString("0"), TimeUnit.MILLISECONDS);
                     undefinedPosition = map.getRegex("(?i)undefined-?position").asBoolean(true);
                 }
                 if (!(type instanceof NumberDataType)) {
                     SaveData.log(2, "Cannot create a top for non-number data type '" + key + "'" + (type == null ? "" : ", current instance: " + type.getClass().getName()));
                     continue;
                 }
-                final TopEntry<? extends Number> entry = new TopEntry<>((NumberDataType<? extends Number>) type, limit, update, indexMapping, undefinedPosition);
+                final TopEntry<? extends Number> entry = new TopEntry<>((NumberDataType<? extends Number>) type, limit, update, snapshot, undefinedPosition);
                 this.tops.put(key, entry);
             }
         }
         SaveData.log(4, "Loaded " + this.tops.size() + " top" + (this.tops.size() == 1 ? "" : "s") + ": " + String.join(", ", this.tops.keySet()));
+        final SettingsNode writeConfig = config.getRegex("(?i)write-?(behind|buffer)");
+        if (writeConfig.isMap() && writeConfig.asMapNode().getIgnoreCase("enabled").asBoolean(false)) {
+            final MapNode map = writeConfig.asMapNode();
+            final long interval = DurationFormatter.format(map.getIgnoreCase("interval").asString("5 SECONDS"), TimeUnit.MILLISECONDS);
+            final int maxSize = map.getRegex("(?i)max-?size").asInt(1000);
+            this.writeBuffer = new WriteBuffer(this::writeDataEntry, interval, maxSize);
+            SaveData.log(4, "Using write-behind buffer with " + interval + " ms interval and " + maxSize + " max size");
+        }
+        final SettingsNode purgeConfig = config.getRegex("(?i)purge|expired-?purge");
+        if (purgeConfig.isMap() && purgeConfig.asMapNode().getIgnoreCase("enabled").asBoolean(false)) {
+            final MapNode map = purgeConfig.asMapNode();
+            this.purgeInterval = DurationFormatter.format(map.getIgnoreCase("interval").asString("10 MINUTES"), TimeUnit.MILLISECONDS);
+            this.purgeBatchSize = Math.max(1, map.getRegex("(?i)batch-?size").asInt(500));
+            this.purgeBatchDelay = DurationFormatter.format(map.getRegex("(?i)batch-?delay").asString("1 SECONDS"), TimeUnit.MILLISECONDS);
+            SaveData.log(4, "Using expired purge every " + this.purgeInterval + " ms with batches of " + this.purgeBatchSize + " rows");
+        } else {
+            this.purgeInterval = 0;
+        }
+        final SettingsNode usersConfig = config.getRegex("(?i)known-?users");
+        if (usersConfig.isMap() && usersConfig.asMapNode().getIgnoreCase("enabled").asBoolean(false)) {
+            final MapNode map = usersConfig.asMapNode();
+            this.expectedUsers = Math.max(1000L, map.getIgnoreCase("expected").asLong(100000L));
+            this.falsePositive = map.getRegex("(?i)fpp|false-?positive").asDouble(0.01D);
+            final long negativeCache = DurationFormatter.format(map.getRegex("(?i)negative-?cache").asString("5 MINUTES"), TimeUnit.MILLISECONDS);
+            if (negativeCache > 0) {
+                this.unknownUsers = CacheBuilder.newBuilder().maximumSize(this.expectedUsers).expireAfterWrite(negativeCache, TimeUnit.MILLISECONDS).build();
+            }
+            // The filter is created before the scan, so users saved while scanning are not lost
+            this.knownUsers = BloomFilter.create(USER_FUNNEL, this.expectedUsers, this.falsePositive);
+        }
         if (this.client instanceof HikariClient) {
             final SettingsNode messengerConfig = config.getIgnoreCase("messenger");
             if (messengerConfig.isMap() && messengerConfig.asMapNode().getIgnoreCase("enabled").asBoolean(false)) {
@@ -92,31 +157,115 @@ public class Database {
                 this.messenger.onLoad(messengerConfig.asMapNode());
             }
         }
+        if (this.knownUsers != null && this.messenger == null && this.client.getType() instanceof SqlType && ((SqlType) this.client.getType()).isExternal()) {
+            // Online users are always loaded from database, but the filter doesn't know the users created by other servers
+            SaveData.log(2, "The database '" + getName() + "' uses known users filter without messenger, offline lookups of users created by other servers will be empty until next restart");
+        }
     }
 
     public void onEnable() {
         this.client.onStart();
+        if (this.knownUsers != null) {
+            this.knownUsersReady = false;
+            Task.runAsync(() -> {
+                final long before = System.currentTimeMillis();
+                final LongAdder count = new LongAdder();
+                this.client.loadUsers(user -> {
+                    this.knownUsers.put(user);
+                    count.increment();
+                });
+                this.knownUsersReady = true;
+                SaveData.log(4, "Loaded " + count.sum() + " known users for database '" + getName() + "' in " + (System.currentTimeMillis() - before) + " ms");
+                if (count.sum() > this.expectedUsers) {
+                    SaveData.log(2, "The database '" + getName() + "' has more users than expected (" + count.sum() + " > " + this.expectedUsers + "), consider increasing the known users filter size");
+                }
+            });
+        }
         for (Map.Entry<String, TopEntry<?>> entry : this.tops.entrySet()) {
-            entry.getValue().update(this.client, entry.getValue().getType().getId());
+            final TopEntry<?> top = entry.getValue();
+            final String key = top.getType().getId();
+            if (top.getSnapshotInterval() > 0) {
+                final Path file = getSnapshotFile(key);
+                final long time = top.loadSnapshot(file);
+                if (time > 0) {
+                    // Catch up in background with data modified after snapshot
+                    Task.runAsync(() -> top.update(this.client, key, time));
+                } else {
+                    top.update(this.client, key);
+                }
+                final long interval = top.getSnapshotInterval();
+                this.snapshotTasks.add(SaveData.get().getDataCore().getScheduler().scheduleWithFixedDelay(() -> top.saveSnapshot(file), interval, interval, TimeUnit.MILLISECONDS));
+            } else {
+                top.update(this.client, key);
+            }
         }
         this.enabled = true;
         if (this.messenger != null) {
             this.messenger.onStart();
         }
+        if (this.writeBuffer != null) {
+            this.writeBuffer.start(SaveData.get().getDataCore().getScheduler());
+        }
+        if (this.purgeInterval > 0) {
+            schedulePurge(this.purgeInterval);
+        }
     }
 
     public void onDisable() {
         this.enabled = false;
+        if (this.purgeTask != null) {
+            this.purgeTask.cancel(false);
+            this.purgeTask = null;
+        }
+        if (this.writeBuffer != null) {
+            this.writeBuffer.stop();
+        }
         if (this.messenger != null) {
             this.messenger.onClose();
         }
+        for (ScheduledFuture<?> task : this.snapshotTasks) {
+            task.cancel(false);
+        }
+        this.snapshotTasks.clear();
         for (Map.Entry<String, TopEntry<?>> entry : this.tops.entrySet()) {
+            if (entry.getValue().getSnapshotInterval() > 0) {
+                entry.getValue().saveSnapshot(getSnapshotFile(entry.getValue().getType().getId()));
+            }
             entry.getValue().clear();
         }
         this.tops.clear();
         this.client.onClose();
     }
 
+    private void schedulePurge(long delay) {
+        this.purgeTask = SaveData.get().getDataCore().getScheduler().schedule(this::purgeExpired, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void purgeExpired() {
+        if (!this.enabled) {
+            return;
+        }
+        int found;
+        try {
+            found = this.client.purgeExpired(System.currentTimeMillis(), this.purgeBatchSize, (user, key) -> {
+                final TopEntry<?> top = getTop(key);
+                if (top != null) {
+                    top.update(user, null);
+                }
+            });
+        } catch (Throwable t) {
+            SaveData.logException(2, t, "Cannot purge expired data from database '" + getName() + "'");
+            found = 0;
+        }
+        if (found > 0) {
+            SaveData.log(4, "Purged " + found + " expired entries from database '" + getName() + "'");
+        }
+        if (this.enabled) {
+            // A full batch means more expired rows may remain, so the next batch runs after a short delay
+            schedulePurge(found >= this.purgeBatchSize ? this.purgeBatchDelay : this.purgeInterval);
+        }
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -136,6 +285,11 @@ public class Database {
         return client;
     }
 
+    @NotNull
+    public Path getSnapshotFile(@NotNull String key) {
+        return SaveData.get().getFolder().resolve("database").resolve("top").resolve(getName() + "-" + key + ".top");
+    }
+
     @Nullable
     public TopEntry<?> getTop(@NotNull String key) {
         return tops.get(key);
@@ -151,12 +305,144 @@ public class Database {
         return messenger;
     }
 
+    @Nullable
+    public WriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    public boolean isKnownUser(@NotNull UUID user) {
+        if (unknownUsers != null && unknownUsers.getIfPresent(user) != null) {
+            return false;
+        }
+        if (knownUsers == null || !knownUsersReady) {
+            return true;
+        }
+        return knownUsers.mightContain(user);
+    }
+
+    public void addKnownUser(@NotNull UUID user) {
+        if (knownUsers != null) {
+            knownUsers.put(user);
+        }
+        if (unknownUsers != null) {
+            unknownUsers.invalidate(user);
+        }
+    }
+
+    public long getSkippedLookups() {
+        return skippedLookups.sum();
+    }
+
+    @NotNull
+    public DataNode loadData(@NotNull UUID user, @NotNull Function<String, DataType<Object>> dataProvider) {
+        return loadData(user, dataProvider, false);
+    }
+
+    /**
+     * Load the data of provided user, unknown users are skipped unless they're online.<br>
+     * Online users are always loaded from database, since they may be created by other server
+     * and the empty node is saved on quit.
+     *
+     * @param user         the user to load.
+     * @param dataProvider the function to get data types by key.
+     * @param online       true if the user is online.
+     * @return             a data node with the user data.
+     */
+    @NotNull
+    public DataNode loadData(@NotNull UUID user, @NotNull Function<String, DataType<Object>> dataProvider, boolean online) {
+        if (!online && !isKnownUser(user)) {
+            skippedLookups.increment();
+            return new DataNode(getName());
+        }
+        final DataNode node = client.loadData(user, dataProvider);
+        if (node != null && !node.isEmpty()) {
+            addKnownUser(user);
+        } else if (node != null && unknownUsers != null) {
+            unknownUsers.put(user, true);
+        }
+        return node;
+    }
+
+    public void flush() {
+        if (writeBuffer != null) {
+            writeBuffer.flush();
+        }
+    }
+
+    public void flush(@NotNull UUID user) {
+        if (writeBuffer != null) {
+            writeBuffer.flush(user);
+        }
+    }
+
     public void saveDataEntry(@NotNull UUID user, @NotNull DataEntry<?> entry) {
-        client.saveDataEntry(user, entry);
+        if (entry.getValue() != null) {
+            addKnownUser(user);
+        }
         final TopEntry<?> top = getTop(entry.getType().getId());
         if (top != null) {
             top.update(user, entry.getValue());
         }
+        if (writeBuffer != null) {
+            writeBuffer.add(user, entry);
+        } else {
+            writeDataEntry(user, entry);
+        }
+    }
+
+    public boolean isAtomicNumbers() {
+        // Buffered writes are merged in memory, so the computed value is saved instead
+        return writeBuffer == null && client.isAtomicNumbers();
+    }
+
+    public <T> void applyDataEntry(@NotNull UUID user, @NotNull DataEntry<T> entry, @NotNull DataOperator operator, @NotNull Number operand) {
+        // Buffered writes are merged in memory, so the computed value is saved instead
+        final T value = writeBuffer == null ? client.updateNumber(user, entry, operator, operand) : null;
+        if (value == null) {
+            saveDataEntry(user, entry);
+            return;
+        }
+        addKnownUser(user);
+        synchronized (entry) {
+            entry.setValue(value);
+            entry.setEdited(false);
+        }
+        final TopEntry<?> top = getTop(entry.getType().getId());
+        if (top != null) {
+            top.update(user, value);
+        }
+        if (messenger != null) {
+            messenger.sendAny(user.toString(), entry.getType().getId(), entry.getType().save(value));
+        }
+    }
+
+    public void deleteDataEntries(@NotNull Map<UUID, List<DataEntry<?>>> entries) {
+        for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+            for (DataEntry<?> dataEntry : entry.getValue()) {
+                final TopEntry<?> top = getTop(dataEntry.getType().getId());
+                if (top != null) {
+                    top.update(entry.getKey(), null);
+                }
+                if (writeBuffer != null) {
+                    writeBuffer.add(entry.getKey(), dataEntry);
+                }
+            }
+        }
+        if (writeBuffer != null) {
+            return;
+        }
+        client.deleteDataEntries(entries);
+        if (messenger != null) {
+            for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+                for (DataEntry<?> dataEntry : entry.getValue()) {
+                    messenger.sendAny(entry.getKey().toString(), dataEntry.getType().getId());
+                }
+            }
+        }
+    }
+
+    public void writeDataEntry(@NotNull UUID user, @NotNull DataEntry<?> entry) {
+        client.saveDataEntry(user, entry);
         if (messenger != null) {
             // Ugly top compatibility
             if (entry.getType() instanceof NumberDataType) {
@@ -0,0 +1,197 @@
+package com.saicone.savedata.core.data;
+
+import com.saicone.savedata.SaveData;
+import com.saicone.savedata.api.data.DataEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel that tracks the expiration of temporary data entries.<br>
+ * Every entry is placed on the bucket of its deadline tick, so scheduling is O(1) and
+ * every tick only visits one bucket, the due entries are provided in a single list.
+ */
+public class ExpirationWheel {
+
+    private final long tickDuration;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Consumer<List<Timeout>> expireAction;
+
+    private final Map<DataEntry<?>, Timeout> timeouts = new IdentityHashMap<>();
+    private final long startTime;
+    private long currentTick;
+
+    private ScheduledFuture<?> task;
+
+    public ExpirationWheel(long tickDuration, int size, @NotNull Consumer<List<Timeout>> expireAction) {
+        this(tickDuration, size, System.currentTimeMillis(), expireAction);
+    }
+
+    @SuppressWarnings("unchecked")
+    ExpirationWheel(long tickDuration, int size, long startTime, @NotNull Consumer<List<Timeout>> expireAction) {
+        this.tickDuration = Math.max(1L, tickDuration);
+        // Size rounded to the next power of two
+        final int buckets = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        this.wheel = new List[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.wheel[i] = new ArrayList<>();
+        }
+        this.mask = buckets - 1;
+        this.startTime = startTime;
+        this.expireAction = expireAction;
+    }
+
+    public void start(@NotNull ScheduledExecutorService scheduler) {
+        stop();
+        this.task = scheduler.scheduleAtFixedRate(this::tick, this.tickDuration, this.tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+    }
+
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    /**
+     * Track the expiration of provided entry, any previous expiration of the same entry is replaced.
+     *
+     * @param user     the entry owner.
+     * @param database the database name.
+     * @param entry    the entry to track, if it's not temporary the tracking is cancelled.
+     */
+    public synchronized void schedule(@NotNull UUID user, @NotNull String database, @NotNull DataEntry<?> entry) {
+        if (!entry.isTemporary()) {
+            cancel(entry);
+            return;
+        }
+        final long expiration = entry.getExpiration();
+        final Timeout old = this.timeouts.get(entry);
+        if (old != null) {
+            if (old.expiration == expiration) {
+                return;
+            }
+            old.cancelled = true;
+        }
+        final long tick = Math.max(this.currentTick + 1, (expiration - this.startTime + this.tickDuration - 1) / this.tickDuration);
+        final Timeout timeout = new Timeout(user, database, entry, expiration, tick);
+        this.wheel[(int) (tick & this.mask)].add(timeout);
+        this.timeouts.put(entry, timeout);
+    }
+
+    public synchronized void cancel(@NotNull DataEntry<?> entry) {
+        final Timeout timeout = this.timeouts.remove(entry);
+        if (timeout != null) {
+            timeout.cancelled = true;
+        }
+    }
+
+    public synchronized void clear() {
+        for (List<Timeout> bucket : this.wheel) {
+            bucket.clear();
+        }
+        this.timeouts.clear();
+    }
+
+    private void tick() {
+        tick(System.currentTimeMillis());
+    }
+
+    void tick(long time) {
+        final List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            final long target = (time - this.startTime) / this.tickDuration;
+            if (target <= this.currentTick) {
+                return;
+            }
+            // Catch up any delayed tick, every bucket is visited at most once
+            final long steps = Math.min(target - this.currentTick, this.wheel.length);
+            for (long i = 1; i <= steps; i++) {
+                expire(this.wheel[(int) ((this.currentTick + i) & this.mask)], target, expired);
+            }
+            this.currentTick = target;
+        }
+        if (!expired.isEmpty()) {
+            try {
+                this.expireAction.accept(expired);
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot process " + expired.size() + " expired data entries");
+            }
+        }
+    }
+
+    private void expire(@NotNull List<Timeout> bucket, long tick, @NotNull List<Timeout> expired) {
+        int i = 0;
+        while (i < bucket.size()) {
+            final Timeout timeout = bucket.get(i);
+            if (timeout.cancelled || timeout.tick <= tick) {
+                // Swap remove, the order inside bucket doesn't matter
+                final Timeout last = bucket.remove(bucket.size() - 1);
+                if (i < bucket.size()) {
+                    bucket.set(i, last);
+                }
+                if (!timeout.cancelled) {
+                    this.timeouts.remove(timeout.entry);
+                    expired.add(timeout);
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    public static final class Timeout {
+
+        private final UUID user;
+        private final String database;
+        private final DataEntry<?> entry;
+        private final long expiration;
+        private final long tick;
+
+        private boolean cancelled;
+
+        Timeout(@NotNull UUID user, @NotNull String database, @NotNull DataEntry<?> entry, long expiration, long tick) {
+            this.user = user;
+            this.database = database;
+            this.entry = entry;
+            this.expiration = expiration;
+            this.tick = tick;
+        }
+
+        @NotNull
+        public UUID getUser() {
+            return user;
+        }
+
+        @NotNull
+        public String getDatabase() {
+            return database;
+        }
+
+        @NotNull
+        public DataEntry<?> getEntry() {
+            return entry;
+        }
+
+        public long getExpiration() {
+            return expiration;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.saicone.savedata.core.data;
+
+import com.saicone.savedata.SaveData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Per-user serial executor.<br>
+ * Operations of the same user are executed one by one in submission order, while different
+ * users are executed in parallel, a mailbox only exists while it has pending operations.
+ */
+public class UserMailbox {
+
+    // Operations executed in a row before giving the thread to other users
+    private static final int BATCH_SIZE = 64;
+
+    private final Executor executor;
+    private final Map<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public UserMailbox(@NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    public int size() {
+        return mailboxes.size();
+    }
+
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull UUID user, @NotNull Supplier<T> operation) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        execute(user, () -> {
+            try {
+                future.complete(operation.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public void execute(@NotNull UUID user, @NotNull Runnable operation) {
+        enqueue(user, null, operation);
+    }
+
+    /**
+     * Queue a save operation for provided user, if there's already a save with the same key waiting
+     * to be executed, the provided save is ignored since the queued one will write the latest value.
+     *
+     * @param user the user to save.
+     * @param key  the save key, normally the database name and data type id.
+     * @param save the save operation.
+     */
+    public void save(@NotNull UUID user, @NotNull String key, @NotNull Runnable save) {
+        enqueue(user, key, save);
+    }
+
+    private void enqueue(@NotNull UUID user, String saveKey, @NotNull Runnable operation) {
+        final boolean[] start = new boolean[1];
+        // Compute is atomic with the removal of idle mailboxes, so an operation is never added into a finished mailbox
+        this.mailboxes.compute(user, (key, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                start[0] = true;
+            }
+            final Mailbox finalMailbox = mailbox;
+            synchronized (finalMailbox) {
+                if (saveKey == null) {
+                    finalMailbox.queue.add(operation);
+                } else if (finalMailbox.saves.add(saveKey)) {
+                    finalMailbox.queue.add(() -> {
+                        // Removed before save, so any later change queues a new save
+                        synchronized (finalMailbox) {
+                            finalMailbox.saves.remove(saveKey);
+                        }
+                        operation.run();
+                    });
+                }
+            }
+            return finalMailbox;
+        });
+        if (start[0]) {
+            this.executor.execute(() -> drain(user));
+        }
+    }
+
+    private void drain(@NotNull UUID user) {
+        final Mailbox mailbox = this.mailboxes.get(user);
+        if (mailbox == null) {
+            return;
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Runnable operation;
+            synchronized (mailbox) {
+                operation = mailbox.queue.poll();
+            }
+            if (operation == null) {
+                break;
+            }
+            try {
+                operation.run();
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot execute queued operation of user " + user);
+            }
+        }
+        final boolean[] idle = new boolean[1];
+        this.mailboxes.computeIfPresent(user, (key, current) -> {
+            synchronized (current) {
+                if (current.queue.isEmpty()) {
+                    idle[0] = true;
+                    return null;
+                }
+            }
+            return current;
+        });
+        if (!idle[0]) {
+            this.executor.execute(() -> drain(user));
+        }
+    }
+
+    private static final class Mailbox {
+
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private final Set<String> saves = new HashSet<>();
+    }
+}
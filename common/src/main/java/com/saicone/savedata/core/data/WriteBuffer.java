@@ -0,0 +1,119 @@
+package com.saicone.savedata.core.data;
+
+import com.saicone.mcode.module.task.Task;
+import com.saicone.savedata.SaveData;
+import com.saicone.savedata.api.data.DataEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+public class WriteBuffer {
+
+    private final BiConsumer<UUID, DataEntry<?>> writer;
+    private final long interval;
+    private final int maxSize;
+
+    // Every user has its own pending entries mapped by data type id, so repeated writes collapse into the latest entry
+    private final Map<UUID, Map<String, DataEntry<?>>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private ScheduledFuture<?> task;
+
+    public WriteBuffer(@NotNull BiConsumer<UUID, DataEntry<?>> writer, long interval, int maxSize) {
+        this.writer = writer;
+        this.interval = interval;
+        this.maxSize = maxSize;
+    }
+
+    public void start(@NotNull ScheduledExecutorService scheduler) {
+        stop();
+        if (this.interval > 0) {
+            this.task = scheduler.scheduleWithFixedDelay(this::flush, this.interval, this.interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+        flush();
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public void add(@NotNull UUID user, @NotNull DataEntry<?> entry) {
+        // Compute is atomic with the remove() inside flush(), so an entry is never added into an already flushed map
+        this.pending.compute(user, (key, entries) -> {
+            if (entries == null) {
+                entries = new LinkedHashMap<>();
+            }
+            if (entries.put(entry.getType().getId(), entry) == null) {
+                this.size.incrementAndGet();
+            }
+            return entries;
+        });
+        if (this.maxSize > 0 && this.size.get() >= this.maxSize && this.flushing.compareAndSet(false, true)) {
+            Task.runAsync(() -> {
+                try {
+                    flush();
+                } finally {
+                    this.flushing.set(false);
+                }
+            });
+        }
+    }
+
+    public synchronized void flush() {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        for (UUID user : this.pending.keySet()) {
+            flush(user);
+        }
+    }
+
+    public synchronized void flush(@NotNull UUID user) {
+        final Map<String, DataEntry<?>> entries = this.pending.remove(user);
+        if (entries == null) {
+            return;
+        }
+        this.size.addAndGet(-entries.size());
+        for (DataEntry<?> entry : entries.values()) {
+            try {
+                this.writer.accept(user, entry);
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot write data entry '" + entry.getType().getId() + "' for user " + user);
+            }
+        }
+    }
+
+    public void clear() {
+        this.pending.clear();
+        this.size.set(0);
+    }
+}
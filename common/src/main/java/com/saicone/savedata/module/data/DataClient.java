@@ -2,13 +2,18 @@ package com.saicone.savedata.module.data;
 
 import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataNode;
+import com.saicone.savedata.api.data.DataOperator;
 import com.saicone.savedata.api.data.DataType;
 import com.saicone.settings.node.MapNode;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public interface DataClient {
@@ -31,12 +36,68 @@ public interface DataClient {
     @Nullable
     <T> DataEntry<T> loadDataEntry(@NotNull UUID user, @NotNull String key, @NotNull DataType<T> dataType);
 
+    void loadUsers(@NotNull Consumer<UUID> consumer);
+
     @NotNull
     <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType);
 
+    @NotNull
+    default <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType, int limit) {
+        return loadTopEntry(key, dataType);
+    }
+
+    @Nullable
+    default <T> Map<UUID, T> loadTopDelta(@NotNull String key, @NotNull DataType<T> dataType, long since, @NotNull Collection<UUID> users) {
+        // Not supported by default, so a full load is required
+        return null;
+    }
+
+    default boolean isTopPositionSupported() {
+        // Not supported by default
+        return false;
+    }
+
+    default int loadTopPosition(@NotNull String key, @NotNull Number value) {
+        // Not supported by default
+        return -1;
+    }
+
+    default boolean isAtomicNumbers() {
+        // Not supported by default
+        return false;
+    }
+
+    @Nullable
+    default <T> T updateNumber(@NotNull UUID user, @NotNull DataEntry<T> entry, @NotNull DataOperator operator, @NotNull Number operand) {
+        // Not supported by default, so the computed value is saved instead
+        return null;
+    }
+
+    default int purgeExpired(long time, int limit, @NotNull BiConsumer<UUID, String> consumer) {
+        // Not supported by default, expired entries are deleted on load
+        return 0;
+    }
+
+    default void pinUser(@NotNull UUID user) {
+        // Users are pinned while they're online, clients with cached user data must keep it loaded
+    }
+
+    default void unpinUser(@NotNull UUID user) {
+        // Not pinned users can be evicted from any cache
+    }
+
     void saveData(@NotNull UUID user, @NotNull DataNode node);
 
     void saveDataEntry(@NotNull UUID user, @NotNull DataEntry<?> entry);
 
+    default void deleteDataEntries(@NotNull Map<UUID, List<DataEntry<?>>> entries) {
+        // Entries without value are deleted on save
+        for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+            for (DataEntry<?> dataEntry : entry.getValue()) {
+                saveDataEntry(entry.getKey(), dataEntry);
+            }
+        }
+    }
+
     void deleteData(@NotNull Map<String, Object> columns);
 }
@@ -1,12 +1,20 @@
 package com.saicone.savedata.module.data.client;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.saicone.ezlib.EzlibLoader;
 import com.saicone.savedata.SaveData;
 import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataNode;
 import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.api.data.entry.CollectionDataEntry;
+import com.saicone.savedata.api.data.type.CollectionDataType;
+import com.saicone.savedata.api.data.type.ElementCodec;
 import com.saicone.savedata.module.data.DataClient;
+import com.saicone.savedata.module.data.file.BinaryFile;
 import com.saicone.savedata.module.data.file.FileType;
+import com.saicone.savedata.module.data.file.GroupCommitWriter;
+import com.saicone.savedata.util.DurationFormatter;
 import com.saicone.settings.Settings;
 import com.saicone.settings.SettingsData;
 import com.saicone.settings.SettingsNode;
@@ -15,24 +23,48 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 public class FileClient implements DataClient {
 
+    // Delta files bigger than this are merged into user file
+    private static final long MAX_DELTA_SIZE = 64 * 1024;
+
     private final String databaseName;
     private final Path parentFolder;
 
     private FileType type;
     private Path folder;
+    private boolean deltaLog;
+    private boolean sharded;
+    private GroupCommitWriter writer = new GroupCommitWriter(0L, false);
 
-    private final Map<UUID, SettingsData<Settings>> userData = new HashMap<>();
+    // Online users are pinned, any other loaded file is kept on a bounded cache
+    private final Map<UUID, SettingsData<Settings>> pinnedData = new ConcurrentHashMap<>();
+    private Cache<UUID, SettingsData<Settings>> userData = CacheBuilder.newBuilder().build();
+    // Entries with changes saved on delta file instead of user file
+    private final Map<UUID, Map<String, CollectionDataEntry<?, ?>>> deltaEntries = new ConcurrentHashMap<>();
 
     public FileClient(@NotNull String databaseName, @NotNull Path parentFolder) {
         this.databaseName = databaseName;
@@ -44,6 +76,18 @@ public class FileClient implements DataClient {
         this.type = null;
         final String type = config.getIgnoreCase("type").asString("json");
         this.type = FileType.of(type, null);
+        this.deltaLog = config.getRegex("(?i)delta-?(log|file)").asBoolean(false);
+        this.sharded = config.getRegex("(?i)shard(ed|s|ing)?").asBoolean(false);
+        final long cacheSize = config.getRegex("(?i)cache-?size").asLong(1000L);
+        final long cacheExpiration = DurationFormatter.format(config.getRegex("(?i)cache-?expiration").asString("5 MINUTES"), TimeUnit.MILLISECONDS);
+        this.userData.invalidateAll();
+        this.userData = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0L, cacheSize))
+                .expireAfterAccess(Math.max(0L, cacheExpiration), TimeUnit.MILLISECONDS)
+                .build();
+        final long commitInterval = DurationFormatter.format(config.getRegex("(?i)(group-?)?commit-?(interval|delay)").asString("0"), TimeUnit.MILLISECONDS);
+        this.writer.stop();
+        this.writer = new GroupCommitWriter(commitInterval, config.getRegex("(?i)f?sync").asBoolean(false), this.type != null && this.type.isBinary() ? BinaryFile::write : null);
 
         if (this.type == null) {
             SaveData.log(1, "Cannot initialize FILE database, the file type '" + type + "' doesn't exists");
@@ -66,11 +110,15 @@ public class FileClient implements DataClient {
                 SaveData.logException(1, e, "Cannot create database folder");
             }
         }
+        this.writer.start(SaveData.get().getDataCore().getScheduler());
     }
 
     @Override
     public void onClose() {
-        userData.clear();
+        writer.stop();
+        pinnedData.clear();
+        userData.invalidateAll();
+        deltaEntries.clear();
     }
 
     @NotNull
@@ -95,26 +143,308 @@ public class FileClient implements DataClient {
         return folder;
     }
 
+    public boolean isDeltaLog() {
+        return deltaLog;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    @NotNull
+    public GroupCommitWriter getWriter() {
+        return writer;
+    }
+
+    @NotNull
+    public Path getUserFolder(@NotNull UUID user) {
+        if (!this.sharded) {
+            return this.folder;
+        }
+        // UUID digits are already random, so the first ones distribute the files evenly, for example ab/cd/<uuid>.json
+        final String id = user.toString();
+        return this.folder.resolve(id.substring(0, 2)).resolve(id.substring(2, 4));
+    }
+
+    @NotNull
+    public Path getDeltaFile(@NotNull UUID user) {
+        return getUserFolder(user).resolve(user + ".delta");
+    }
+
     @NotNull
     public SettingsData<Settings> getData(@NotNull UUID user) {
-        SettingsData<Settings> data = this.userData.get(user);
-        if (data == null) {
-            data = SettingsData.of(com.saicone.settings.data.DataType.FILE, user + "." + this.type.getExtension())
-                    .parentFolder(this.folder.toFile());
+        final SettingsData<Settings> data = this.pinnedData.get(user);
+        if (data != null) {
+            return data;
+        }
+        return this.userData.asMap().computeIfAbsent(user, key -> {
+            // Evicted data may still be waiting to be written
+            final SettingsData<Settings> pending = this.writer.getPending(key);
+            return pending != null ? pending : createData(key);
+        });
+    }
+
+    @NotNull
+    private SettingsData<Settings> peekData(@NotNull UUID user) {
+        // Files read by scans are not cached, so a full folder read doesn't fill the cache
+        final SettingsData<Settings> data = this.pinnedData.get(user);
+        if (data != null) {
+            return data;
+        }
+        final SettingsData<Settings> cached = this.userData.getIfPresent(user);
+        return cached != null ? cached : createData(user);
+    }
+
+    @NotNull
+    private SettingsData<Settings> createData(@NotNull UUID user) {
+        return SettingsData.of(com.saicone.settings.data.DataType.FILE, user + "." + this.type.getExtension())
+                .parentFolder(getUserFolder(user).toFile());
+    }
+
+    @NotNull
+    private Path getReadFile(@NotNull SettingsData<Settings> data) {
+        final Path file = data.getFile().toPath();
+        if (this.sharded && !Files.exists(file)) {
+            // Lookups read the sharded path first and the legacy flat file second, files are only moved by layout migration
+            final Path legacy = this.folder.resolve(file.getFileName());
+            if (Files.exists(legacy)) {
+                return legacy;
+            }
+        }
+        return file;
+    }
+
+    private boolean exists(@NotNull SettingsData<Settings> data) {
+        return Files.exists(getReadFile(data));
+    }
+
+    private <T> T read(@NotNull SettingsData<Settings> data, @NotNull FileReader<T> reader) throws IOException {
+        while (true) {
+            final Path file = getReadFile(data);
+            final boolean legacy = !file.equals(data.getFile().toPath());
+            try {
+                final T result = reader.read(file);
+                if (!legacy || Files.exists(file)) {
+                    return result;
+                }
+            } catch (IOException e) {
+                if (!legacy || Files.exists(file)) {
+                    throw e;
+                }
+            }
+            // The legacy file was moved into sharded layout while it was read, so it's read again
+        }
+    }
+
+    private boolean moveLegacy(@NotNull UUID user) {
+        final Path userFolder = getUserFolder(user);
+        boolean moved = false;
+        for (String name : new String[] { user + "." + this.type.getExtension(), user + ".delta" }) {
+            final Path legacy = this.folder.resolve(name);
+            if (!Files.exists(legacy)) {
+                continue;
+            }
+            final Path file = userFolder.resolve(name);
+            try {
+                if (Files.exists(file)) {
+                    SaveData.log(2, "The file " + legacy + " exists on both layouts, the sharded one will be used");
+                    continue;
+                }
+                Files.createDirectories(userFolder);
+                Files.move(legacy, file);
+                moved = true;
+            } catch (IOException e) {
+                SaveData.logException(2, e, "Cannot move legacy file " + legacy + " into sharded folder");
+            }
+        }
+        return moved;
+    }
+
+    private boolean isCurrent(@NotNull Path path) {
+        // Legacy flat files are ignored if the same file exists on sharded layout
+        if (!this.sharded || !this.folder.equals(path.getParent())) {
+            return true;
+        }
+        final UUID user = getUser(path);
+        return user == null || !Files.exists(getUserFolder(user).resolve(path.getFileName()));
+    }
+
+    /**
+     * Move every legacy flat file into sharded layout, the files are moved in batches, so the
+     * server is not blocked by a large folder.<br>
+     * Lookups read legacy files where they are and loaded users always write into sharded layout,
+     * so the files can be moved at any time.
+     *
+     * @param batchSize  the amount of users moved per batch.
+     * @param batchDelay the time delay in milliseconds between batches.
+     * @return           a future completed with the amount of moved users.
+     */
+    @NotNull
+    public CompletableFuture<Integer> migrateLayout(int batchSize, long batchDelay) {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        if (!this.sharded) {
+            future.complete(0);
+            return future;
+        }
+        final List<UUID> users = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    final UUID user = getUser(path);
+                    if (user != null) {
+                        users.add(user);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        SaveData.log(3, "Moving " + users.size() + " user file" + (users.size() == 1 ? "" : "s") + " of database '" + this.databaseName + "' into sharded layout...");
+        return runBatches(users, batchSize, batchDelay, this::moveLegacy);
+    }
+
+    /**
+     * Convert the user files saved with provided file type into the current file type, the users
+     * that already have a file with the current type are skipped.
+     *
+     * @param from       the file type to convert from.
+     * @param batchSize  the amount of users converted per batch.
+     * @param batchDelay the time delay in milliseconds between batches.
+     * @return           a future completed with the amount of converted users.
+     */
+    @NotNull
+    public CompletableFuture<Integer> convertFrom(@NotNull FileType from, int batchSize, long batchDelay) {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        final Path fromFolder = from.getFolder(this.parentFolder.resolve("database").resolve(this.databaseName));
+        if (from == this.type || !Files.isDirectory(fromFolder)) {
+            future.complete(0);
+            return future;
+        }
+        if (!from.isDependencyPresent()) {
+            SaveData.bootstrap().getLibraryLoader().applyDependency(new EzlibLoader.Dependency().path(from.getDependency()).relocate(from.getRelocations()));
+        }
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(fromFolder, 3)) {
+            walk.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith("." + from.getExtension()))
+                    .forEach(files::add);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        SaveData.log(3, "Converting " + files.size() + " " + from.name() + " file" + (files.size() == 1 ? "" : "s") + " of database '" + this.databaseName + "' into " + this.type.name() + "...");
+        return runBatches(files, batchSize, batchDelay, path -> {
+            final String name = path.getFileName().toString();
+            final UUID user;
+            try {
+                user = UUID.fromString(name.substring(0, name.lastIndexOf('.')));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            final SettingsData<Settings> data = getData(user);
+            if (exists(data) || this.pinnedData.containsKey(user)) {
+                return false;
+            }
+            final Settings settings;
+            if (from.isBinary()) {
+                try {
+                    settings = BinaryFile.toSettings(BinaryFile.read(path));
+                } catch (IOException e) {
+                    SaveData.logException(2, e, "Cannot read binary file " + path);
+                    return false;
+                }
+            } else {
+                settings = SettingsData.of(com.saicone.settings.data.DataType.FILE, name).parentFolder(path.getParent().toFile()).load();
+            }
+            synchronized (data) {
+                data.loaded(settings);
+            }
+            this.writer.write(user, data, null);
+            return true;
+        });
+    }
+
+    @NotNull
+    private <T> CompletableFuture<Integer> runBatches(@NotNull List<T> items, int batchSize, long batchDelay, @NotNull Predicate<T> action) {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        final Iterator<T> iterator = items.iterator();
+        final ScheduledExecutorService scheduler = SaveData.get().getDataCore().getScheduler();
+        final Runnable batch = new Runnable() {
+            private int count;
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < batchSize && iterator.hasNext(); i++) {
+                        if (action.test(iterator.next())) {
+                            count++;
+                        }
+                    }
+                    if (iterator.hasNext()) {
+                        scheduler.schedule(this, batchDelay, TimeUnit.MILLISECONDS);
+                    } else {
+                        writer.flush();
+                        future.complete(count);
+                    }
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        };
+        scheduler.execute(batch);
+        return future;
+    }
+
+    @Override
+    public void pinUser(@NotNull UUID user) {
+        this.pinnedData.computeIfAbsent(user, key -> {
+            final SettingsData<Settings> data = this.userData.asMap().remove(key);
+            return data != null ? data : createData(key);
+        });
+    }
+
+    @Override
+    public void unpinUser(@NotNull UUID user) {
+        final SettingsData<Settings> data = this.pinnedData.remove(user);
+        if (data != null) {
             this.userData.put(user, data);
         }
-        return data;
+    }
+
+    @Nullable
+    private UUID getUser(@NotNull Path path) {
+        final String name = path.getFileName().toString();
+        if (!name.toLowerCase().endsWith("." + this.type.getExtension())) {
+            return null;
+        }
+        try {
+            return UUID.fromString(name.substring(0, name.lastIndexOf('.')));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public @NotNull DataNode loadData(@NotNull UUID user, @NotNull Function<String, DataType<Object>> dataProvider) {
         SaveData.log(4, "Loading user " + user + " from file type " + type.getName());
         final DataNode node = new DataNode(this.databaseName);
+        this.writer.flush(user);
         final SettingsData<Settings> data = getData(user);
-        if (data.getFile().exists()) {
+        if (exists(data)) {
             SaveData.log(4, "The file " + data.getFile().getName() + " exists");
             final long time = System.currentTimeMillis();
-            final Settings config = data.load();
+            final Map<String, List<CollectionDataEntry.Change<String>>> changes = readDelta(user);
+            if (this.type.isBinary()) {
+                // Binary records are read without building the settings tree
+                for (Map.Entry<String, BinaryFile.Record> entry : readRecords(user, data).entrySet()) {
+                    final BinaryFile.Record record = entry.getValue();
+                    loadEntry(user, node, dataProvider, entry.getKey(), record.getType(), record.getValue(), record.getExpiration(), time, changes);
+                }
+                return node;
+            }
+            final Settings config = load(data);
             if (!config.isEmpty()) {
                 SaveData.log(4, "The file " + data.getFile().getName() + " is not empty");
                 for (Map.Entry<String, SettingsNode> entry : config.getValue().entrySet()) {
@@ -122,29 +452,11 @@ public class FileClient implements DataClient {
                         SaveData.log(4, "The entry " + entry.getKey() + " is not map");
                         continue;
                     }
-                    final DataType<Object> dataType = dataProvider.apply(entry.getKey());
-                    if (dataType == null) {
-                        SaveData.log(2, "Found invalid data type '" + entry.getKey() + "' for user " + user, ", ignoring it...");
-                        continue;
-                    }
                     final MapNode map = entry.getValue().asMapNode();
                     final long expiration = map.getIgnoreCase("expiration").asLong(0L);
-                    if (expiration > 0 && time >= expiration) {
-                        SaveData.log(4, "entry " + entry.getKey() + " expired");
-                        continue;
-                    }
                     final String type = map.getIgnoreCase("type").asString();
                     final String value = map.getIgnoreCase("value").asString();
-                    final Object parsedValue;
-                    try {
-                        parsedValue = dataType.load(value);
-                    } catch (Throwable t) {
-                        SaveData.log(2, () -> "Cannot parse value '" + value + "' with data type " + type + " as " +  dataType.getTypeName() + " for user " + user + ", deleting it...");
-                        continue;
-                    }
-                    final DataEntry<?> dataEntry = new DataEntry<>(dataType, parsedValue, expiration);
-                    SaveData.log(4, () -> "- " + dataEntry);
-                    node.put(entry.getKey(), dataEntry);
+                    loadEntry(user, node, dataProvider, entry.getKey(), type, value, expiration, time, changes);
                 }
             }
         } else {
@@ -153,72 +465,308 @@ public class FileClient implements DataClient {
         return node;
     }
 
+    @SuppressWarnings("unchecked")
+    private void loadEntry(@NotNull UUID user, @NotNull DataNode node, @NotNull Function<String, DataType<Object>> dataProvider, @NotNull String key, @Nullable String type, @Nullable String value, long expiration, long time, @NotNull Map<String, List<CollectionDataEntry.Change<String>>> changes) {
+        final DataType<Object> dataType = dataProvider.apply(key);
+        if (dataType == null) {
+            SaveData.log(2, "Found invalid data type '" + key + "' for user " + user, ", ignoring it...");
+            return;
+        }
+        if (expiration > 0 && time >= expiration) {
+            SaveData.log(4, "entry " + key + " expired");
+            return;
+        }
+        if (dataType instanceof CollectionDataType) {
+            final DataEntry<?> dataEntry = loadEntry(user, (CollectionDataType<Object, ?>) dataType, value, expiration, changes.get(key));
+            SaveData.log(4, () -> "- " + dataEntry);
+            node.put(key, dataEntry);
+            return;
+        }
+        final Object parsedValue;
+        try {
+            parsedValue = dataType.load(value);
+        } catch (Throwable t) {
+            SaveData.log(2, () -> "Cannot parse value '" + value + "' with data type " + type + " as " +  dataType.getTypeName() + " for user " + user + ", deleting it...");
+            return;
+        }
+        final DataEntry<?> dataEntry = dataType.createEntry(null, parsedValue, expiration);
+        if (dataType.isOutdated(value)) {
+            dataEntry.setEdited(true);
+        }
+        SaveData.log(4, () -> "- " + dataEntry);
+        node.put(key, dataEntry);
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public @Nullable <T> DataEntry<T> loadDataEntry(@NotNull UUID user, @NotNull String key, @NotNull DataType<T> dataType) {
         final long time = System.currentTimeMillis();
-        DataEntry<T> entry = null;
-        final Settings config = getData(user).load();
-        if (!config.isEmpty()) {
+        this.writer.flush(user);
+        final long expiration;
+        final String type;
+        final String value;
+        if (this.type.isBinary()) {
+            final BinaryFile.Record record = readRecord(user, key);
+            if (record == null) {
+                return null;
+            }
+            expiration = record.getExpiration();
+            type = record.getType();
+            value = record.getValue();
+        } else {
+            final Settings config = load(getData(user));
+            if (config.isEmpty()) {
+                return null;
+            }
             final SettingsNode node = config.get(key);
             if (!node.isMap()) {
                 return null;
             }
             final MapNode map = node.asMapNode();
-            final long expiration = map.getIgnoreCase("expiration").asLong(0L);
-            if (expiration > 0 && time >= expiration) {
-                return null;
-            }
-            final String type = map.getIgnoreCase("type").asString();
-            final String value = map.getIgnoreCase("value").asString();
-            final T parsedValue;
+            expiration = map.getIgnoreCase("expiration").asLong(0L);
+            type = map.getIgnoreCase("type").asString();
+            value = map.getIgnoreCase("value").asString();
+        }
+        if (expiration > 0 && time >= expiration) {
+            return null;
+        }
+        if (dataType instanceof CollectionDataType) {
+            return loadEntry(user, (CollectionDataType<T, ?>) dataType, value, expiration, readDelta(user).get(key));
+        }
+        final T parsedValue;
+        try {
+            parsedValue = dataType.load(value);
+        } catch (Throwable t) {
+            SaveData.log(2, () -> "Cannot parse value '" + value + "' with data type " + type + " as " +  dataType.getTypeName() + " for user " + user + ", deleting it...");
+            return null;
+        }
+        final DataEntry<T> entry = dataType.createEntry(null, parsedValue, expiration);
+        if (dataType.isOutdated(value)) {
+            entry.setEdited(true);
+        }
+        return entry;
+    }
+
+    @NotNull
+    private Map<String, BinaryFile.Record> readRecords(@NotNull UUID user, @NotNull SettingsData<Settings> data) {
+        try {
+            return read(data, BinaryFile::read);
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot read binary file of user " + user);
+            return new HashMap<>();
+        }
+    }
+
+    @Nullable
+    private BinaryFile.Record readRecord(@NotNull UUID user, @NotNull String key) {
+        try {
+            return read(peekData(user), file -> BinaryFile.read(file, key));
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot read binary file of user " + user);
+            return null;
+        }
+    }
+
+    @Nullable
+    private String readValue(@NotNull UUID user, @NotNull String key) {
+        if (this.type.isBinary()) {
+            final BinaryFile.Record record = readRecord(user, key);
+            return record == null ? null : record.getValue();
+        }
+        final SettingsNode node = load(peekData(user)).get(key);
+        if (!node.isMap()) {
+            return null;
+        }
+        return node.asMapNode().getIgnoreCase("value").asString();
+    }
+
+    @NotNull
+    private Settings load(@NotNull SettingsData<Settings> data) {
+        Settings settings;
+        try {
+            settings = read(data, file -> {
+                if (this.type.isBinary()) {
+                    return BinaryFile.toSettings(BinaryFile.read(file));
+                } else if (file.equals(data.getFile().toPath())) {
+                    return data.load();
+                } else {
+                    return SettingsData.of(com.saicone.settings.data.DataType.FILE, file.getFileName().toString()).parentFolder(file.getParent().toFile()).load();
+                }
+            });
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot read file " + data.getFile().getName());
+            settings = new Settings();
+        }
+        data.loaded(settings);
+        return settings;
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private <T, E> DataEntry<T> loadEntry(@NotNull UUID user, @NotNull CollectionDataType<T, E> dataType, @Nullable String value, long expiration, @Nullable List<CollectionDataEntry.Change<String>> changes) {
+        final CollectionDataEntry<T, E> entry = (CollectionDataEntry<T, E>) dataType.createEntry(null, null, expiration);
+        // The value is parsed on first access
+        entry.setLoader(() -> {
             try {
-                parsedValue = dataType.load(value);
+                T parsedValue = dataType.load(value);
+                if (changes != null) {
+                    final List<CollectionDataEntry.Change<E>> list = new ArrayList<>(changes.size());
+                    for (CollectionDataEntry.Change<String> change : changes) {
+                        list.add(new CollectionDataEntry.Change<>(change.isAdded(), dataType.loadElement(change.getElement())));
+                    }
+                    parsedValue = dataType.apply(parsedValue, list);
+                }
+                return parsedValue;
             } catch (Throwable t) {
-                SaveData.log(2, () -> "Cannot parse value '" + value + "' with data type " + type + " as " +  dataType.getTypeName() + " for user " + user + ", deleting it...");
+                SaveData.log(2, () -> "Cannot parse value '" + value + "' as " +  dataType.getTypeName() + " for user " + user + ", deleting it...");
                 return null;
             }
-            entry = new DataEntry<>(dataType, parsedValue, expiration);
+        }, this.deltaLog);
+        if (changes != null && !changes.isEmpty()) {
+            this.deltaEntries.computeIfAbsent(user, __ -> new HashMap<>()).put(dataType.getId(), entry);
+        }
+        if (dataType.isOutdated(value)) {
+            entry.setEdited(true);
         }
         return entry;
     }
 
+    @NotNull
+    private Map<String, List<CollectionDataEntry.Change<String>>> readDelta(@NotNull UUID user) {
+        final Map<String, List<CollectionDataEntry.Change<String>>> changes = new HashMap<>();
+        if (this.sharded) {
+            // Changes saved before the sharded path was written are kept on legacy delta file
+            readDelta(user, this.folder.resolve(user + ".delta"), changes);
+        }
+        readDelta(user, getDeltaFile(user), changes);
+        return changes.isEmpty() ? Map.of() : changes;
+    }
+
+    private void readDelta(@NotNull UUID user, @NotNull Path file, @NotNull Map<String, List<CollectionDataEntry.Change<String>>> changes) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                final boolean added;
+                final String key;
+                final String element;
+                try {
+                    added = in.readBoolean();
+                    key = in.readUTF();
+                    element = ElementCodec.readString(in);
+                } catch (EOFException e) {
+                    // End of file or incomplete record
+                    break;
+                }
+                changes.computeIfAbsent(key, __ -> new ArrayList<>()).add(new CollectionDataEntry.Change<>(added, element));
+            }
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot read delta file of user " + user);
+        }
+    }
+
+    private <E> void appendDelta(@NotNull UUID user, @NotNull CollectionDataEntry<?, E> entry, @NotNull CollectionDataEntry.Delta<E> delta) throws IOException {
+        final Path file = getDeltaFile(user);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            for (CollectionDataEntry.Change<E> change : delta.getChanges()) {
+                out.writeBoolean(change.isAdded());
+                out.writeUTF(entry.getType().getId());
+                ElementCodec.writeString(out, entry.getType().saveElement(change.getElement()));
+            }
+        }
+        this.deltaEntries.computeIfAbsent(user, __ -> new HashMap<>()).put(entry.getType().getId(), entry);
+    }
+
+    private int getDepth() {
+        // Sharded layout has two folder levels, legacy flat files are also included
+        return this.sharded ? 3 : 1;
+    }
+
+    @Override
+    public void loadUsers(@NotNull Consumer<UUID> consumer) {
+        this.writer.flush();
+        try (Stream<Path> walk = Files.walk(this.folder, getDepth())) {
+            walk.filter(Files::isRegularFile)
+                    .filter(this::isCurrent)
+                    .map(this::getUser)
+                    .filter(Objects::nonNull)
+                    .forEach(consumer);
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot load users");
+        }
+    }
+
     @Override
     public @NotNull <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType) {
         final Map<UUID, T> data = new HashMap<>();
-        try (Stream<Path> walk = Files.walk(this.folder, 1)) {
+        this.writer.flush();
+        try (Stream<Path> walk = Files.walk(this.folder, getDepth())) {
             final Iterator<UUID> iterator = walk
                     .filter(Files::isRegularFile)
-                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith("." + this.type.getExtension()))
-                    .map(path -> {
-                        try {
-                            final String name = path.getFileName().toString();
-                            return UUID.fromString(name.substring(0, name.lastIndexOf('.')));
-                        } catch (IllegalArgumentException e) {
-                            return null;
-                        }
-                    })
+                    .filter(this::isCurrent)
+                    .map(this::getUser)
+                    .filter(Objects::nonNull)
                     .iterator();
             while (iterator.hasNext()) {
                 final UUID user = iterator.next();
-                final Settings config = getData(user).load();
-                if (!config.isEmpty()) {
-                    final SettingsNode node = config.get(key);
-                    if (!node.isMap()) {
-                        continue;
-                    }
-                    final MapNode map = node.asMapNode();
-                    final String value = map.getIgnoreCase("value").asString();
-                    final T parsedValue;
+                final String value = readValue(user, key);
+                if (value == null) {
+                    continue;
+                }
+                final T parsedValue;
+                try {
+                    parsedValue = dataType.load(value);
+                } catch (Throwable t) {
+                    continue;
+                }
+                data.put(user, parsedValue);
+            }
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot load top data");
+        }
+        return data;
+    }
+
+    @Override
+    public @Nullable <T> Map<UUID, T> loadTopDelta(@NotNull String key, @NotNull DataType<T> dataType, long since, @NotNull Collection<UUID> users) {
+        // Only files modified after provided time, a null value means the user doesn't have the data anymore
+        final Map<UUID, T> data = new HashMap<>();
+        final Set<UUID> present = new HashSet<>();
+        this.writer.flush();
+        try (Stream<Path> walk = Files.walk(this.folder, getDepth())) {
+            final Iterator<Path> iterator = walk
+                    .filter(Files::isRegularFile)
+                    .filter(this::isCurrent)
+                    .iterator();
+            while (iterator.hasNext()) {
+                final Path path = iterator.next();
+                final UUID user = getUser(path);
+                if (user == null) {
+                    continue;
+                }
+                present.add(user);
+                if (path.toFile().lastModified() < since) {
+                    continue;
+                }
+                T parsedValue = null;
+                final String value = readValue(user, key);
+                if (value != null) {
                     try {
                         parsedValue = dataType.load(value);
-                    } catch (Throwable t) {
-                        continue;
-                    }
-                    data.put(user, parsedValue);
+                    } catch (Throwable ignored) { }
                 }
+                data.put(user, parsedValue);
             }
         } catch (IOException e) {
-            SaveData.logException(2, e, "Cannot load top data");
+            SaveData.logException(2, e, "Cannot load top delta data");
+            return null;
+        }
+        // Deleted files don't have a modification time, so the provided users without file are removed
+        for (UUID user : users) {
+            if (!present.contains(user)) {
+                data.put(user, null);
+            }
         }
         return data;
     }
@@ -227,28 +775,92 @@ public class FileClient implements DataClient {
     public void saveData(@NotNull UUID user, @NotNull DataNode node) {
         final SettingsData<Settings> data = getData(user);
         if (node.isEmpty()) {
-            final File file = data.getFile();
-            if (file.exists()) {
-                file.delete();
+            this.deltaEntries.remove(user);
+            synchronized (data) {
+                data.loaded(new Settings());
             }
+            saveToFile(user, data);
             return;
         }
         for (Map.Entry<String, DataEntry<?>> entry : node.entrySet()) {
             saveData(data, entry.getValue());
         }
-        saveToFile(data);
+        saveToFile(user, data);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void saveDataEntry(@NotNull UUID user, @NotNull DataEntry<?> entry) {
+        if (this.deltaLog && entry instanceof CollectionDataEntry && entry.getValue() != null) {
+            final SettingsData<Settings> data = getData(user);
+            if (exists(data)) {
+                final CollectionDataEntry.Delta<?> delta = ((CollectionDataEntry<?, ?>) entry).poll();
+                if (!delta.isRewrite()) {
+                    if (delta.isEmpty()) {
+                        return;
+                    }
+                    // The delta file is deleted after a full write, so any pending write must be done first
+                    this.writer.flush(user);
+                    final long size;
+                    try {
+                        appendDelta(user, (CollectionDataEntry<?, Object>) entry, (CollectionDataEntry.Delta<Object>) delta);
+                        size = Files.size(getDeltaFile(user));
+                    } catch (IOException e) {
+                        SaveData.logException(2, e, "Cannot append changes into delta file of user " + user);
+                        ((CollectionDataEntry<?, ?>) entry).requireRewrite();
+                        return;
+                    }
+                    if (size > MAX_DELTA_SIZE) {
+                        saveToFile(user, loadIfNeeded(data));
+                    }
+                    return;
+                }
+            }
+        }
         final SettingsData<Settings> data = saveData(getData(user), entry);
-        saveToFile(data);
+        saveToFile(user, data);
+    }
+
+    @Override
+    public void deleteDataEntries(@NotNull Map<UUID, List<DataEntry<?>>> entries) {
+        for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+            final SettingsData<Settings> data = getData(entry.getKey());
+            if (!exists(data)) {
+                continue;
+            }
+            // Every expired entry of the same user is removed with a single file write
+            loadIfNeeded(data);
+            for (DataEntry<?> dataEntry : entry.getValue()) {
+                saveData(data, dataEntry);
+            }
+            saveToFile(entry.getKey(), data);
+        }
+    }
+
+    @NotNull
+    private SettingsData<Settings> loadIfNeeded(@NotNull SettingsData<Settings> data) {
+        if (data.getLoaded() == null) {
+            load(data);
+        }
+        return data;
     }
 
     @NotNull
     private SettingsData<Settings> saveData(@NotNull SettingsData<Settings> data, @NotNull DataEntry<?> entry) {
+        synchronized (data) {
+            return saveData0(data, entry);
+        }
+    }
+
+    @NotNull
+    private SettingsData<Settings> saveData0(@NotNull SettingsData<Settings> data, @NotNull DataEntry<?> entry) {
         if (data.getLoaded() == null) {
-            data.loaded(new Settings());
+            // Evicted data is loaded again, so the other entries are kept on save
+            if (exists(data)) {
+                load(data);
+            } else {
+                data.loaded(new Settings());
+            }
         }
         final MapNode map = data.getLoaded().asMapNode();
         if (entry.getValue() == null) {
@@ -258,7 +870,12 @@ public class FileClient implements DataClient {
             if (entry.getType().getTypeName() != null) {
                 node.put("type", entry.getType().getTypeName());
             }
-            node.put("value", entry.getSavedValue());
+            if (this.deltaLog && entry instanceof CollectionDataEntry) {
+                // The full value is written, so pending changes are discarded
+                node.put("value", ((CollectionDataEntry<?, ?>) entry).pollSavedValue());
+            } else {
+                node.put("value", entry.getSavedValue());
+            }
             if (entry.isTemporary()) {
                 node.put("expiration", entry.getExpiration());
             }
@@ -267,15 +884,39 @@ public class FileClient implements DataClient {
         return data;
     }
 
-    private void saveToFile(@NotNull SettingsData<Settings> data) {
-        if (data.getLoaded().isEmpty()) {
-            final File file = data.getFile();
-            if (file.exists()) {
-                file.delete();
+    private void saveToFile(@NotNull UUID user, @NotNull SettingsData<Settings> data) {
+        // Merge the entries that have changes on delta file
+        final Map<String, CollectionDataEntry<?, ?>> entries = this.deltaEntries.remove(user);
+        if (entries != null) {
+            for (CollectionDataEntry<?, ?> entry : entries.values()) {
+                saveData(data, entry);
+            }
+        }
+        // Empty data is deleted, the delta and legacy files are deleted once the full file is written
+        this.writer.write(user, data, () -> {
+            deleteDelta(user);
+            deleteLegacy(user);
+        });
+    }
+
+    private void deleteDelta(@NotNull UUID user) {
+        try {
+            Files.deleteIfExists(getDeltaFile(user));
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot delete delta file of user " + user);
+        }
+    }
+
+    private void deleteLegacy(@NotNull UUID user) {
+        if (!this.sharded) {
+            return;
+        }
+        for (String name : new String[] { user + "." + this.type.getExtension(), user + ".delta" }) {
+            try {
+                Files.deleteIfExists(this.folder.resolve(name));
+            } catch (IOException e) {
+                SaveData.logException(2, e, "Cannot delete legacy file " + name);
             }
-        } else {
-            data.getSource();
-            data.save();
         }
     }
 
@@ -283,4 +924,9 @@ public class FileClient implements DataClient {
     public void deleteData(@NotNull Map<String, Object> columns) {
         throw new RuntimeException("Not yet supported");
     }
+
+    @FunctionalInterface
+    private interface FileReader<T> {
+        T read(@NotNull Path file) throws IOException;
+    }
 }
@@ -1,12 +1,20 @@
 package com.saicone.savedata.module.data.client;
 
 import com.saicone.ezlib.EzlibLoader;
+import com.saicone.mcode.util.Dual;
 import com.saicone.mcode.util.text.Strings;
 import com.saicone.savedata.SaveData;
 import com.saicone.savedata.api.data.DataEntry;
 import com.saicone.savedata.api.data.DataNode;
+import com.saicone.savedata.api.data.DataOperator;
 import com.saicone.savedata.api.data.DataType;
 import com.saicone.savedata.api.data.DataUser;
+import com.saicone.savedata.api.data.entry.CollectionDataEntry;
+import com.saicone.savedata.api.data.type.BigIntegerDataType;
+import com.saicone.savedata.api.data.type.CollectionDataType;
+import com.saicone.savedata.api.data.type.DoubleDataType;
+import com.saicone.savedata.api.data.type.LongDataType;
+import com.saicone.savedata.api.data.type.NumberDataType;
 import com.saicone.savedata.module.data.DataClient;
 import com.saicone.savedata.module.data.sql.SqlSchema;
 import com.saicone.savedata.module.data.sql.SqlType;
@@ -19,6 +27,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
@@ -30,26 +42,42 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class HikariClient implements DataClient {
 
     private static final SqlSchema SCHEMA = new SqlSchema(SqlType.MYSQL);
+    // Value saved on data table when the collection elements are saved on element table
+    private static final String ELEMENT_VALUE = "{elements}";
     private static final Map<String, ColumnFunction<?>> COLUMNS = Map.of(
             "id", ColumnFunction.of(Types.INTEGER, PreparedStatement::setInt),
             "user", ColumnFunction.of(Types.STRING, PreparedStatement::setString),
             "type", ColumnFunction.of(Types.STRING, PreparedStatement::setString),
             "key", ColumnFunction.of(Types.STRING, PreparedStatement::setString),
             "value", ColumnFunction.of(Types.STRING, PreparedStatement::setString),
-            "expiration", ColumnFunction.of(Types.LONG, PreparedStatement::setLong)
+            "expiration", ColumnFunction.of(Types.LONG, PreparedStatement::setLong),
+            "value_num", ColumnFunction.of(Types.BIG_DECIMAL, PreparedStatement::setBigDecimal)
     );
+    // Numeric column size on databases with limited decimals
+    private static final int NUMERIC_PRECISION = 65;
+    private static final int NUMERIC_SCALE = 30;
 
     private final SqlSchema schema;
     private final String databaseName;
 
     private SqlType type;
     private String tableName;
+    private boolean numericColumn;
+    private boolean elementTable;
+    private boolean elementTablePresent;
+    private boolean uniqueIndex;
+    private boolean binaryUuid;
+    private boolean atomicNumbers;
+    // True when the user column of current table is stored as binary
+    private boolean userBinary;
     private HikariConfig hikariConfig;
     private HikariDataSource hikari;
 
@@ -69,6 +97,10 @@ public class HikariClient implements DataClient {
         this.type = SqlType.of(type, null);
 
         this.tableName = config.getRegex("(?i)table-?(name)?").asString("savedata_data");
+        this.numericColumn = config.getRegex("(?i)numeric-?(column|value)").asBoolean(false);
+        this.elementTable = config.getRegex("(?i)element-?(table|rows?)").asBoolean(false);
+        this.binaryUuid = config.getRegex("(?i)binary-?(uuid|user)s?").asBoolean(false);
+        this.atomicNumbers = config.getRegex("(?i)atomic-?(numbers?|operations?|operators?)").asBoolean(false);
 
         if (this.type == null) {
             SaveData.log(1, "Cannot initialize SQL database, the sql type '" + type + "' doesn't exists");
@@ -124,41 +156,19 @@ public class HikariClient implements DataClient {
             return;
         }
         hikari = new HikariDataSource(hikariConfig);
+        this.userBinary = this.binaryUuid;
         connect(con -> {
             // This table creation process was taken from LuckPerms
-            if (isTablePresent(con, tableName)) {
+            if (isTablePresent(con, tableName) || isTablePresent(con, tableName + "_legacy")) {
+                migrateUser(con, tableName, "create:data_table", "select:migration", "upsert:data", List.of("user", "type", "key", "value", "expiration"), List.of("_user", "_user_key", "_expiration", "_top"));
+                this.userBinary = isUserBinary(con, tableName);
+                if (this.userBinary != this.binaryUuid) {
+                    SaveData.log(2, "The table '" + tableName + "' stores users as " + (this.userBinary ? "binary" : "text") + ", so that format will be used");
+                }
                 return;
             }
             SaveData.log(3, "The table '" + tableName + "' doesn't exist, so will be created");
-
-            final List<String> list = schema.getList(type, "create:data_table", "{table_name}", tableName);
-            boolean fail = false;
-
-            try (Statement stmt = con.createStatement()) {
-                for (String sql : list) {
-                    stmt.addBatch(Strings.replaceArgs(sql, "utf8mb4"));
-                }
-
-                try {
-                    stmt.executeBatch();
-                } catch (BatchUpdateException e) {
-                    if (e.getMessage().contains("Unknown character set")) {
-                        fail = true;
-                    } else {
-                        throw e;
-                    }
-                }
-            }
-
-            if (fail) {
-                try (Statement stmt = con.createStatement()) {
-                    for (String sql : list) {
-                        stmt.addBatch(Strings.replaceArgs(sql, "utf8"));
-                    }
-
-                    stmt.executeBatch();
-                }
-            }
+            createTable(con, "create:data_table");
 
             // Migrate old data
             final Map<String, DataNode> nodes = new HashMap<>();
@@ -208,7 +218,7 @@ public class HikariClient implements DataClient {
             if (!nodes.isEmpty()) {
                 SaveData.log(3, "Updating old data into new format...");
 
-                try (PreparedStatement insert = con.prepareStatement(getInsertStatement())) {
+                try (PreparedStatement insert = con.prepareStatement(this.schema.get(this.type, "insert:data", "{table_name}", tableName))) {
                     int count = 0;
                     for (Map.Entry<String, DataNode> userEntry : nodes.entrySet()) {
                         for (Map.Entry<String, DataEntry<?>> nodeEntry : userEntry.getValue().entrySet()) {
@@ -217,7 +227,13 @@ public class HikariClient implements DataClient {
                             }
 
                             final DataEntry<?> entry = nodeEntry.getValue();
-                            insert.setString(1, userEntry.getKey());
+                            final UUID user;
+                            try {
+                                user = UUID.fromString(userEntry.getKey());
+                            } catch (IllegalArgumentException e) {
+                                continue;
+                            }
+                            setUser(insert, 1, user);
                             insert.setString(2, entry.getType().getTypeName());
                             insert.setString(3, entry.getType().getId());
                             insert.setString(4, entry.getSavedValue());
@@ -233,6 +249,125 @@ public class HikariClient implements DataClient {
                 }
             }
         });
+        connect(con -> {
+            if (this.type != SqlType.SQLITE) {
+                // Elements are loaded in insertion order, so list values keep their order (SQLite uses the row id)
+                for (String name : List.of(tableName + "_element", tableName + "_element_legacy")) {
+                    if (isTablePresent(con, name) && !isColumnPresent(con, name, "id")) {
+                        SaveData.log(3, "The table '" + name + "' doesn't have an order column, so will be added");
+                        try (Statement stmt = con.createStatement()) {
+                            for (String sql : schema.getList(type, "alter:element_order", "{table_name}", name)) {
+                                stmt.addBatch(sql);
+                            }
+                            stmt.executeBatch();
+                        }
+                    }
+                }
+            }
+            this.elementTablePresent = isTablePresent(con, tableName + "_element");
+            if (this.elementTablePresent || isTablePresent(con, tableName + "_element_legacy")) {
+                migrateUser(con, tableName + "_element", "create:element_table", "select:element_migration", "insert:element", List.of("user", "key", "value"), List.of("_user"));
+                this.elementTablePresent = isTablePresent(con, tableName + "_element");
+            }
+            if (this.elementTable && !this.elementTablePresent) {
+                SaveData.log(3, "The table '" + tableName + "_element' doesn't exist, so will be created");
+                createTable(con, "create:element_table");
+                this.elementTablePresent = true;
+            } else if (this.elementTablePresent && this.type != SqlType.SQLITE && isColumnLimited(con, tableName + "_element", "value")) {
+                // Tables created with a limited element column cannot save long elements
+                SaveData.log(3, "The column 'value' of table '" + tableName + "_element' has a limited size, so it will be changed to text");
+                try (Statement stmt = con.createStatement()) {
+                    for (String sql : schema.getList(type, "alter:element_value", "{table_name}", tableName)) {
+                        stmt.addBatch(sql);
+                    }
+                    stmt.executeBatch();
+                }
+            }
+        });
+        this.uniqueIndex = false;
+        connect(con -> {
+            if (isIndexPresent(con, tableName, tableName + "_user_key")) {
+                this.uniqueIndex = true;
+                return;
+            }
+            SaveData.log(3, "The unique index '" + tableName + "_user_key' doesn't exist on table '" + tableName + "', so duplicated data will be deleted and the index will be created");
+            try (Statement stmt = con.createStatement()) {
+                for (String sql : schema.getList(type, "alter:unique_index", "{table_name}", tableName)) {
+                    stmt.addBatch(sql);
+                }
+                stmt.executeBatch();
+                this.uniqueIndex = true;
+            } catch (SQLException e) {
+                SaveData.logException(2, e, "Cannot create unique index on table '" + tableName + "', data will be saved without upsert");
+            }
+        });
+        connect(con -> {
+            if (isIndexPresent(con, tableName, tableName + "_expiration")) {
+                return;
+            }
+            SaveData.log(3, "The index '" + tableName + "_expiration' doesn't exist on table '" + tableName + "', so will be created");
+            try (Statement stmt = con.createStatement()) {
+                for (String sql : schema.getList(type, "alter:expiration_index", "{table_name}", tableName)) {
+                    stmt.addBatch(sql);
+                }
+                stmt.executeBatch();
+            }
+        });
+        if (this.numericColumn) {
+            connect(con -> {
+                if (isColumnPresent(con, tableName, "value_num")) {
+                    if (this.type != SqlType.SQLITE && !isColumnDecimal(con, tableName, "value_num")) {
+                        // Floating point columns cannot rank big numbers, values are written again on top load
+                        SaveData.log(3, "The column 'value_num' of table '" + tableName + "' is not decimal, so it will be changed");
+                        try (Statement stmt = con.createStatement()) {
+                            for (String sql : schema.getList(type, "alter:numeric_decimal", "{table_name}", tableName)) {
+                                stmt.addBatch(sql);
+                            }
+                            stmt.executeBatch();
+                        }
+                    }
+                    return;
+                }
+                SaveData.log(3, "The column 'value_num' doesn't exist on table '" + tableName + "', so will be created");
+                try (Statement stmt = con.createStatement()) {
+                    for (String sql : schema.getList(type, "alter:numeric_column", "{table_name}", tableName)) {
+                        stmt.addBatch(sql);
+                    }
+                    stmt.executeBatch();
+                }
+            });
+        }
+    }
+
+    private void createTable(@NotNull Connection con, @NotNull String name) throws SQLException {
+        final List<String> list = schema.getList(type, name, "{table_name}", tableName, "{user_type}", getUserType(this.userBinary));
+        boolean fail = false;
+
+        try (Statement stmt = con.createStatement()) {
+            for (String sql : list) {
+                stmt.addBatch(Strings.replaceArgs(sql, "utf8mb4"));
+            }
+
+            try {
+                stmt.executeBatch();
+            } catch (BatchUpdateException e) {
+                if (e.getMessage().contains("Unknown character set")) {
+                    fail = true;
+                } else {
+                    throw e;
+                }
+            }
+        }
+
+        if (fail) {
+            try (Statement stmt = con.createStatement()) {
+                for (String sql : list) {
+                    stmt.addBatch(Strings.replaceArgs(sql, "utf8"));
+                }
+
+                stmt.executeBatch();
+            }
+        }
     }
 
     @Override
@@ -269,34 +404,131 @@ public class HikariClient implements DataClient {
         return this.schema.getSelect(this.type, "select:data_entry", List.of("*"), "{table_name}", tableName);
     }
 
+    @NotNull
+    public String getSelectUsersStatement() {
+        return this.schema.getSelect(this.type, "select:users", List.of("user"), "{table_name}", tableName);
+    }
+
     @NotNull
     public String getSelectTopStatement() {
         return this.schema.getSelect(this.type, "select:top_entry", List.of("user", "value"), "{table_name}", tableName);
     }
 
+    @NotNull
+    public String getSelectTopLimitStatement() {
+        return this.schema.getSelect(this.type, "select:top_entry_limit", List.of("user", "value"), "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getSelectTopPositionStatement() {
+        return this.schema.get(this.type, "select:top_position", "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getSelectNumericMissingStatement() {
+        return this.schema.getSelect(this.type, "select:numeric_missing", List.of("id", "value"), "{table_name}", tableName);
+    }
+
     @NotNull
     public String getInsertStatement() {
-        return this.schema.get(this.type, "insert:data", "{table_name}", tableName);
+        return this.schema.get(this.type, this.numericColumn ? "insert:data_numeric" : "insert:data", "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getUpsertStatement() {
+        return this.schema.get(this.type, this.numericColumn ? "upsert:data_numeric" : "upsert:data", "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getUpdateNumberStatement(@NotNull String expression) {
+        return this.schema.get(this.type, "update:data_number", "{table_name}", tableName, "{expression}", expression);
+    }
+
+    @Override
+    public boolean isAtomicNumbers() {
+        return atomicNumbers;
+    }
+
+    public boolean isUniqueIndex() {
+        return uniqueIndex;
     }
 
     @NotNull
     public String getUpdateStatement() {
+        if (this.numericColumn) {
+            return this.schema.getUpdate(this.type, "update:data", List.of("type", "key", "value", "expiration", "value_num"), "{table_name}", tableName);
+        }
         return this.schema.getUpdate(this.type, "update:data", List.of("type", "key", "value", "expiration"), "{table_name}", tableName);
     }
 
+    @NotNull
+    public String getUpdateNumericStatement() {
+        return this.schema.getUpdate(this.type, "update:data", List.of("value_num"), "{table_name}", tableName);
+    }
+
+    public boolean isNumericColumn() {
+        return numericColumn;
+    }
+
+    @Override
+    public boolean isTopPositionSupported() {
+        return numericColumn;
+    }
+
+    @NotNull
+    public String getSelectElementStatement() {
+        return this.schema.getSelect(this.type, "select:element", List.of("key", "value"), "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getSelectElementEntryStatement() {
+        return this.schema.getSelect(this.type, "select:element_entry", List.of("value"), "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getInsertElementStatement() {
+        return this.schema.get(this.type, "insert:element", "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getDeleteElementStatement(@NotNull List<String> columns) {
+        return this.schema.getDelete(this.type, "delete:element", columns, "{table_name}", tableName);
+    }
+
+    public boolean isElementTable() {
+        return elementTable;
+    }
+
     @NotNull
     public String getDeleteStatement() {
         return this.schema.getDelete(this.type, "delete:data", List.of("id"), "{table_name}", tableName);
     }
 
+    @NotNull
+    public String getDeleteEntryStatement() {
+        return this.schema.getDelete(this.type, "delete:data", List.of("user", "key"), "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getSelectExpiredStatement() {
+        return this.schema.getSelect(this.type, "select:expired", List.of("id", "user", "key", "value"), "{table_name}", tableName);
+    }
+
+    @NotNull
+    public String getDeleteExpiredStatement() {
+        return this.schema.get(this.type, "delete:expired", "{table_name}", tableName);
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public @NotNull DataNode loadData(@NotNull UUID user, @NotNull Function<String, DataType<Object>> dataProvider) {
         return connect(con -> {
             final long time = System.currentTimeMillis();
             final DataNode node = new DataNode(this.databaseName);
             final Set<Integer> toDelete = new HashSet<>();
+            final Map<String, CollectionDataEntry<Object, Object>> elementEntries = new HashMap<>();
             try (PreparedStatement stmt = con.prepareStatement(getSelectStatement())) {
-                stmt.setString(1, user.toString());
+                setUser(stmt, 1, user);
                 final ResultSet result = stmt.executeQuery();
                 while (result.next()) {
                     final int id = result.getInt("id");
@@ -319,6 +551,12 @@ public class HikariClient implements DataClient {
                         toDelete.add(id);
                         continue;
                     }
+                    if (ELEMENT_VALUE.equals(value) && dataType instanceof CollectionDataType) {
+                        final CollectionDataEntry<Object, Object> dataEntry = (CollectionDataEntry<Object, Object>) dataType.createEntry(id, null, expiration);
+                        elementEntries.put(key, dataEntry);
+                        node.put(key, dataEntry);
+                        continue;
+                    }
                     final Object parsedValue;
                     try {
                         parsedValue = dataType.load(value);
@@ -327,7 +565,26 @@ public class HikariClient implements DataClient {
                         toDelete.add(id);
                         continue;
                     }
-                    node.put(key, new DataEntry<>(id, dataType, parsedValue, expiration));
+                    final DataEntry<Object> dataEntry = dataType.createEntry(id, parsedValue, expiration);
+                    if (dataType.isOutdated(value)) {
+                        dataEntry.setEdited(true);
+                    }
+                    node.put(key, dataEntry);
+                }
+            }
+            if (!elementEntries.isEmpty()) {
+                final Map<String, List<String>> elements = new HashMap<>();
+                if (this.elementTablePresent) {
+                    try (PreparedStatement stmt = con.prepareStatement(getSelectElementStatement())) {
+                        setUser(stmt, 1, user);
+                        final ResultSet result = stmt.executeQuery();
+                        while (result.next()) {
+                            elements.computeIfAbsent(result.getString("key"), __ -> new ArrayList<>()).add(result.getString("value"));
+                        }
+                    }
+                }
+                for (Map.Entry<String, CollectionDataEntry<Object, Object>> entry : elementEntries.entrySet()) {
+                    setElements(entry.getValue(), elements.getOrDefault(entry.getKey(), List.of()));
                 }
             }
             if (!toDelete.isEmpty()) {
@@ -338,13 +595,14 @@ public class HikariClient implements DataClient {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public @Nullable <T> DataEntry<T> loadDataEntry(@NotNull UUID user, @NotNull String key, @NotNull DataType<T> dataType) {
         return connect(con -> {
             final long time = System.currentTimeMillis();
             DataEntry<T> entry = null;
             final Set<Integer> toDelete = new HashSet<>();
             try (PreparedStatement stmt = con.prepareStatement(getSelectEntryStatement())) {
-                stmt.setString(1, user.toString());
+                setUser(stmt, 1, user);
                 stmt.setString(2, key);
                 final ResultSet result = stmt.executeQuery();
                 while (result.next()) {
@@ -361,6 +619,22 @@ public class HikariClient implements DataClient {
                         toDelete.add(id);
                         continue;
                     }
+                    if (ELEMENT_VALUE.equals(value) && dataType instanceof CollectionDataType) {
+                        entry = dataType.createEntry(id, null, expiration);
+                        final List<String> elements = new ArrayList<>();
+                        if (this.elementTablePresent) {
+                            try (PreparedStatement select = con.prepareStatement(getSelectElementEntryStatement())) {
+                                setUser(select, 1, user);
+                                select.setString(2, key);
+                                final ResultSet elementResult = select.executeQuery();
+                                while (elementResult.next()) {
+                                    elements.add(elementResult.getString("value"));
+                                }
+                            }
+                        }
+                        setElements((CollectionDataEntry<T, ?>) entry, elements);
+                        continue;
+                    }
                     final T parsedValue;
                     try {
                         parsedValue = dataType.load(value);
@@ -369,7 +643,10 @@ public class HikariClient implements DataClient {
                         toDelete.add(id);
                         continue;
                     }
-                    entry = new DataEntry<>(id, dataType, parsedValue, expiration);
+                    entry = dataType.createEntry(id, parsedValue, expiration);
+                    if (dataType.isOutdated(value)) {
+                        entry.setEdited(true);
+                    }
                 }
             }
             if (!toDelete.isEmpty()) {
@@ -379,6 +656,30 @@ public class HikariClient implements DataClient {
         });
     }
 
+    private <T> void setElements(@NotNull CollectionDataEntry<T, ?> entry, @NotNull List<String> elements) {
+        // Elements are parsed on first access
+        entry.setLoader(() -> entry.getType().loadElements(elements), this.elementTable);
+        if (!this.elementTable) {
+            entry.setEdited(true);
+        }
+    }
+
+    @Override
+    public void loadUsers(@NotNull Consumer<UUID> consumer) {
+        connect(con -> {
+            try (PreparedStatement stmt = con.prepareStatement(getSelectUsersStatement())) {
+                stmt.setFetchSize(1000);
+                final ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                    final UUID user = getUser(result, "user");
+                    if (user != null) {
+                        consumer.accept(user);
+                    }
+                }
+            }
+        });
+    }
+
     @Override
     public @NotNull <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType) {
         return connect(con -> {
@@ -387,7 +688,10 @@ public class HikariClient implements DataClient {
                 stmt.setString(1, key);
                 final ResultSet result = stmt.executeQuery();
                 while (result.next()) {
-                    final String user = result.getString("user");
+                    final UUID user = getUser(result, "user");
+                    if (user == null) {
+                        continue;
+                    }
                     final String value = result.getString("value");
                     final T parsedValue;
                     try {
@@ -395,15 +699,95 @@ public class HikariClient implements DataClient {
                     } catch (Throwable t) {
                         continue;
                     }
+                    data.put(user, parsedValue);
+                }
+            }
+            return data;
+        });
+    }
+
+    @Override
+    public @NotNull <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType, int limit) {
+        if (!this.numericColumn || limit <= 0) {
+            return loadTopEntry(key, dataType);
+        }
+        return connect(con -> {
+            updateNumeric(con, key, dataType);
+            final Map<UUID, T> data = new HashMap<>();
+            try (PreparedStatement stmt = con.prepareStatement(getSelectTopLimitStatement())) {
+                stmt.setString(1, key);
+                stmt.setInt(2, limit);
+                final ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                    final UUID user = getUser(result, "user");
+                    if (user == null) {
+                        continue;
+                    }
+                    final String value = result.getString("value");
+                    final T parsedValue;
                     try {
-                        data.put(UUID.fromString(user), parsedValue);
-                    } catch (IllegalArgumentException ignored) { }
+                        parsedValue = dataType.load(value);
+                    } catch (Throwable t) {
+                        continue;
+                    }
+                    data.put(user, parsedValue);
                 }
             }
             return data;
         });
     }
 
+    @Override
+    public int loadTopPosition(@NotNull String key, @NotNull Number value) {
+        if (!this.numericColumn) {
+            return -1;
+        }
+        final BigDecimal decimal = toDecimal(value);
+        if (decimal == null) {
+            return -1;
+        }
+        final Integer count = connect(con -> {
+            try (PreparedStatement stmt = con.prepareStatement(getSelectTopPositionStatement())) {
+                stmt.setString(1, key);
+                stmt.setBigDecimal(2, decimal);
+                final ResultSet result = stmt.executeQuery();
+                return result.next() ? result.getInt(1) : null;
+            }
+        });
+        return count == null ? -1 : count + 1;
+    }
+
+    private void updateNumeric(@NotNull Connection con, @NotNull String key, @NotNull DataType<?> dataType) throws SQLException {
+        // Rows saved before the numeric column was enabled
+        final Map<Integer, BigDecimal> values = new HashMap<>();
+        try (PreparedStatement stmt = con.prepareStatement(getSelectNumericMissingStatement())) {
+            stmt.setString(1, key);
+            final ResultSet result = stmt.executeQuery();
+            while (result.next()) {
+                final int id = result.getInt("id");
+                final String value = result.getString("value");
+                try {
+                    final BigDecimal decimal = toDecimal(dataType.load(value));
+                    if (decimal != null) {
+                        values.put(id, decimal);
+                    }
+                } catch (Throwable ignored) { }
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        SaveData.log(4, "Updating " + values.size() + " numeric values for data type '" + key + "'");
+        try (PreparedStatement update = con.prepareStatement(getUpdateNumericStatement())) {
+            for (Map.Entry<Integer, BigDecimal> entry : values.entrySet()) {
+                update.setBigDecimal(1, entry.getValue());
+                update.setInt(2, entry.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
     @Override
     public void saveData(@NotNull UUID user, @NotNull DataNode node) {
         if (node.isEmpty()) {
@@ -412,57 +796,59 @@ public class HikariClient implements DataClient {
         final List<DataEntry<?>> toInsert = new ArrayList<>();
         final List<DataEntry<?>> toUpdate = new ArrayList<>();
         final Set<Integer> toDelete = new HashSet<>();
+        final List<String> toDeleteKeys = new ArrayList<>();
+        final List<String> toDeleteElements = new ArrayList<>();
         for (Map.Entry<String, DataEntry<?>> e : node.entrySet()) {
             final DataEntry<?> entry = e.getValue();
             if (entry.getValue() == null) {
                 if (entry.isSaved()) {
                     toDelete.add(entry.getId());
+                } else if (this.uniqueIndex && entry.isEdited()) {
+                    // Upsert doesn't provide the generated id
+                    toDeleteKeys.add(entry.getType().getId());
+                } else {
+                    continue;
+                }
+                if (isElementEntry(entry)) {
+                    toDeleteElements.add(entry.getType().getId());
                 }
                 continue;
             }
             if (!entry.isEdited()) {
                 continue;
             }
-            if (entry.isSaved()) {
+            if (entry.isSaved() || this.uniqueIndex) {
                 toUpdate.add(entry);
             } else {
                 toInsert.add(entry);
             }
         }
-        if (toInsert.isEmpty() && toUpdate.isEmpty() && toDelete.isEmpty()) {
+        if (toInsert.isEmpty() && toUpdate.isEmpty() && toDelete.isEmpty() && toDeleteKeys.isEmpty()) {
             return;
         }
-        final String uniqueId = user.toString();
         connect(con -> {
             if (!toInsert.isEmpty()) {
                 try (PreparedStatement insert = con.prepareStatement(getInsertStatement())) {
                     for (DataEntry<?> entry : toInsert) {
-                        insert.setString(1, uniqueId);
-                        insert.setString(2, entry.getType().getTypeName());
-                        insert.setString(3, entry.getType().getId());
-                        insert.setString(4, entry.getSavedValue());
-                        if (entry.isTemporary()) {
-                            insert.setLong(5, entry.getExpiration());
-                        } else {
-                            insert.setNull(5, java.sql.Types.BIGINT);
-                        }
+                        setInsert(insert, user, entry);
                         insert.addBatch();
                     }
                     insert.executeBatch();
                 }
             }
-            if (!toUpdate.isEmpty()) {
+            if (this.uniqueIndex && !toUpdate.isEmpty()) {
+                // Every edited entry is written with a single batch, the database decides between insert and update
+                try (PreparedStatement upsert = con.prepareStatement(getUpsertStatement())) {
+                    for (DataEntry<?> entry : toUpdate) {
+                        setInsert(upsert, user, entry);
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
+                }
+            } else if (!toUpdate.isEmpty()) {
                 try (PreparedStatement update = con.prepareStatement(getUpdateStatement())) {
-                    for (DataEntry<?> entry : toInsert) {
-                        update.setString(1, entry.getType().getTypeName());
-                        update.setString(2, entry.getType().getId());
-                        update.setString(3, entry.getSavedValue());
-                        if (entry.isTemporary()) {
-                            update.setLong(4, entry.getExpiration());
-                        } else {
-                            update.setNull(4, java.sql.Types.BIGINT);
-                        }
-                        update.setInt(5, entry.getId());
+                    for (DataEntry<?> entry : toUpdate) {
+                        setUpdate(update, entry);
                         update.addBatch();
                     }
                     update.executeBatch();
@@ -471,6 +857,22 @@ public class HikariClient implements DataClient {
             if (!toDelete.isEmpty()) {
                 deleteData(con, toDelete);
             }
+            if (!toDeleteKeys.isEmpty()) {
+                deleteData(con, user, toDeleteKeys);
+            }
+            for (DataEntry<?> entry : toInsert) {
+                if (isElementEntry(entry)) {
+                    saveElements(con, user, (CollectionDataEntry<?, ?>) entry);
+                }
+            }
+            for (DataEntry<?> entry : toUpdate) {
+                if (isElementEntry(entry)) {
+                    saveElements(con, user, (CollectionDataEntry<?, ?>) entry);
+                }
+            }
+            for (String key : toDeleteElements) {
+                deleteElements(con, user, key);
+            }
         });
     }
 
@@ -483,31 +885,29 @@ public class HikariClient implements DataClient {
                         delete.setInt(1, entry.getId());
                         delete.execute();
                     }
+                } else if (this.uniqueIndex) {
+                    deleteData(con, user, List.of(entry.getType().getId()));
+                } else {
+                    return;
+                }
+                if (isElementEntry(entry)) {
+                    deleteElements(con, user, entry.getType().getId());
+                }
+                return;
+            } else if (this.uniqueIndex) {
+                // Single round-trip without the generated id
+                try (PreparedStatement upsert = con.prepareStatement(getUpsertStatement())) {
+                    setInsert(upsert, user, entry);
+                    upsert.execute();
                 }
             } else if (entry.isSaved()) {
                 try (PreparedStatement update = con.prepareStatement(getUpdateStatement())) {
-                    update.setString(1, entry.getType().getTypeName());
-                    update.setString(2, entry.getType().getId());
-                    update.setString(3, entry.getSavedValue());
-                    if (entry.isTemporary()) {
-                        update.setLong(4, entry.getExpiration());
-                    } else {
-                        update.setNull(4, java.sql.Types.BIGINT);
-                    }
-                    update.setInt(5, entry.getId());
+                    setUpdate(update, entry);
                     update.execute();
                 }
             } else {
                 try (PreparedStatement insert = con.prepareStatement(getInsertStatement(), Statement.RETURN_GENERATED_KEYS)) {
-                    insert.setString(1, user.toString());
-                    insert.setString(2, entry.getType().getTypeName());
-                    insert.setString(3, entry.getType().getId());
-                    insert.setString(4, entry.getSavedValue());
-                    if (entry.isTemporary()) {
-                        insert.setLong(5, entry.getExpiration());
-                    } else {
-                        insert.setNull(5, java.sql.Types.BIGINT);
-                    }
+                    setInsert(insert, user, entry);
                     final int rows = insert.executeUpdate();
                     if (rows > 0) {
                         final ResultSet result = insert.getGeneratedKeys();
@@ -517,9 +917,168 @@ public class HikariClient implements DataClient {
                     }
                 }
             }
+            if (isElementEntry(entry)) {
+                saveElements(con, user, (CollectionDataEntry<?, ?>) entry);
+            }
         });
     }
 
+    @Override
+    public void deleteDataEntries(@NotNull Map<UUID, List<DataEntry<?>>> entries) {
+        connect(con -> {
+            final List<Integer> ids = new ArrayList<>();
+            for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+                final List<String> keys = new ArrayList<>();
+                for (DataEntry<?> dataEntry : entry.getValue()) {
+                    if (dataEntry.isSaved()) {
+                        ids.add(dataEntry.getId());
+                        dataEntry.setId(null);
+                    } else if (this.uniqueIndex) {
+                        keys.add(dataEntry.getType().getId());
+                    } else {
+                        continue;
+                    }
+                    if (isElementEntry(dataEntry)) {
+                        deleteElements(con, entry.getKey(), dataEntry.getType().getId());
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    deleteData(con, entry.getKey(), keys);
+                }
+            }
+            if (!ids.isEmpty()) {
+                deleteData(con, ids);
+            }
+        });
+    }
+
+    private boolean isElementEntry(@NotNull DataEntry<?> entry) {
+        return this.elementTable && entry instanceof CollectionDataEntry;
+    }
+
+    private <E> void saveElements(@NotNull Connection con, @NotNull UUID user, @NotNull CollectionDataEntry<?, E> entry) throws SQLException {
+        final CollectionDataEntry.Delta<E> delta = entry.poll();
+        if (delta.isEmpty()) {
+            return;
+        }
+        final String key = entry.getType().getId();
+        final boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            if (delta.isRewrite()) {
+                deleteElements(con, user, key);
+            }
+            try (PreparedStatement insert = con.prepareStatement(getInsertElementStatement()); PreparedStatement delete = con.prepareStatement(getDeleteElementStatement(List.of("user", "key", "value")))) {
+                // Consecutive changes of the same kind are batched, but the order between additions and removals is kept
+                Boolean added = null;
+                for (CollectionDataEntry.Change<E> change : delta.getChanges()) {
+                    if (added != null && added != change.isAdded()) {
+                        (added ? insert : delete).executeBatch();
+                    }
+                    added = change.isAdded();
+                    final PreparedStatement stmt = added ? insert : delete;
+                    setUser(stmt, 1, user);
+                    stmt.setString(2, key);
+                    stmt.setString(3, entry.getType().saveElement(change.getElement()));
+                    stmt.addBatch();
+                }
+                if (added != null) {
+                    (added ? insert : delete).executeBatch();
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            entry.requireRewrite();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void deleteElements(@NotNull Connection con, @NotNull UUID user, @NotNull String key) throws SQLException {
+        try (PreparedStatement delete = con.prepareStatement(getDeleteElementStatement(List.of("user", "key")))) {
+            setUser(delete, 1, user);
+            delete.setString(2, key);
+            delete.execute();
+        }
+    }
+
+    @Nullable
+    private String getSavedValue(@NotNull DataEntry<?> entry) {
+        return isElementEntry(entry) ? ELEMENT_VALUE : entry.getSavedValue();
+    }
+
+    private void setInsert(@NotNull PreparedStatement insert, @NotNull UUID user, @NotNull DataEntry<?> entry) throws SQLException {
+        setUser(insert, 1, user);
+        insert.setString(2, entry.getType().getTypeName());
+        insert.setString(3, entry.getType().getId());
+        insert.setString(4, getSavedValue(entry));
+        if (entry.isTemporary()) {
+            insert.setLong(5, entry.getExpiration());
+        } else {
+            insert.setNull(5, java.sql.Types.BIGINT);
+        }
+        if (this.numericColumn) {
+            setNumeric(insert, 6, entry);
+        }
+    }
+
+    private void setUpdate(@NotNull PreparedStatement update, @NotNull DataEntry<?> entry) throws SQLException {
+        update.setString(1, entry.getType().getTypeName());
+        update.setString(2, entry.getType().getId());
+        update.setString(3, getSavedValue(entry));
+        if (entry.isTemporary()) {
+            update.setLong(4, entry.getExpiration());
+        } else {
+            update.setNull(4, java.sql.Types.BIGINT);
+        }
+        if (this.numericColumn) {
+            setNumeric(update, 5, entry);
+            update.setInt(6, entry.getId());
+        } else {
+            update.setInt(5, entry.getId());
+        }
+    }
+
+    private void setNumeric(@NotNull PreparedStatement statement, int index, @NotNull DataEntry<?> entry) throws SQLException {
+        final BigDecimal value = entry.getType() instanceof NumberDataType ? toDecimal(entry.getValue()) : null;
+        if (value == null) {
+            statement.setNull(index, java.sql.Types.DECIMAL);
+        } else {
+            statement.setBigDecimal(index, value);
+        }
+    }
+
+    @Nullable
+    private BigDecimal toDecimal(@Nullable Object value) {
+        // Exact conversion, so big integer numbers are not rounded like double values
+        BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            decimal = new BigDecimal((BigInteger) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            decimal = BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            final double d = ((Number) value).doubleValue();
+            if (!Double.isFinite(d)) {
+                return null;
+            }
+            decimal = BigDecimal.valueOf(d);
+        } else {
+            return null;
+        }
+        if (this.type == SqlType.POSTGRESQL) {
+            return decimal;
+        }
+        if (decimal.scale() > NUMERIC_SCALE) {
+            decimal = decimal.setScale(NUMERIC_SCALE, RoundingMode.HALF_EVEN);
+        }
+        // Values that don't fit on numeric column are not ranked by database
+        return decimal.precision() - decimal.scale() > NUMERIC_PRECISION - NUMERIC_SCALE ? null : decimal;
+    }
+
     @Override
     public void deleteData(@NotNull Map<String, Object> columns) {
         final List<String> keys = columns.keySet().stream().filter(key -> {
@@ -538,7 +1097,12 @@ public class HikariClient implements DataClient {
             try (PreparedStatement delete = con.prepareStatement(this.schema.getDelete(this.type, "delete:data", keys, "{table_name}", tableName))) {
                 int index = 1;
                 for (String key : keys) {
-                    COLUMNS.get(key).setAny(delete, index, columns.get(key));
+                    final Object value = columns.get(key);
+                    if (key.equals("user") && value != null) {
+                        setUser(delete, index, value instanceof UUID ? (UUID) value : UUID.fromString(String.valueOf(value)));
+                    } else {
+                        COLUMNS.get(key).setAny(delete, index, value);
+                    }
                     index++;
                 }
                 delete.execute();
@@ -546,6 +1110,260 @@ public class HikariClient implements DataClient {
         });
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> @Nullable T updateNumber(@NotNull UUID user, @NotNull DataEntry<T> entry, @NotNull DataOperator operator, @NotNull Number operand) {
+        if (!this.atomicNumbers || !(entry.getType() instanceof NumberDataType)) {
+            return null;
+        }
+        final NumberDataType<?> dataType = (NumberDataType<?>) entry.getType();
+        final String expression = getNumberExpression(dataType, operator);
+        if (expression == null) {
+            return null;
+        }
+        return connect(con -> {
+            final boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                // A concurrent insert of the same row makes the insert fail, so the update is made again
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    final Number result = updateNumber(con, user, entry, dataType, expression, operator, operand);
+                    if (result != null) {
+                        con.commit();
+                        // The data type of entry is the same number type
+                        return (T) result;
+                    }
+                    con.rollback();
+                }
+                return null;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    @Nullable
+    private <N extends Number> N updateNumber(@NotNull Connection con, @NotNull UUID user, @NotNull DataEntry<?> entry, @NotNull NumberDataType<N> dataType, @NotNull String expression, @NotNull DataOperator operator, @NotNull Number operand) throws SQLException {
+        final String key = dataType.getId();
+        final int rows;
+        try (PreparedStatement update = con.prepareStatement(getUpdateNumberStatement(expression))) {
+            if (dataType instanceof DoubleDataType) {
+                update.setDouble(1, operand.doubleValue());
+            } else {
+                update.setBigDecimal(1, new BigDecimal(operand.toString()));
+            }
+            if (entry.isTemporary()) {
+                update.setLong(2, entry.getExpiration());
+            } else {
+                update.setNull(2, java.sql.Types.BIGINT);
+            }
+            setUser(update, 3, user);
+            update.setString(4, key);
+            rows = update.executeUpdate();
+        }
+        if (rows < 1) {
+            // There's no saved value, so the default value is used
+            final N defaultValue = dataType.getDefaultValue();
+            if (defaultValue == null) {
+                return null;
+            }
+            final N value;
+            switch (operator) {
+                case ADD:
+                case RAW_ADD:
+                    value = dataType.add(defaultValue, operand);
+                    break;
+                case SUBTRACT:
+                case RAW_SUBTRACT:
+                    value = dataType.remove(defaultValue, operand);
+                    break;
+                case MULTIPLY:
+                case RAW_MULTIPLY:
+                    value = dataType.multiply(defaultValue, operand);
+                    break;
+                default:
+                    value = dataType.divide(defaultValue, operand);
+                    break;
+            }
+            try (PreparedStatement insert = con.prepareStatement(getInsertStatement())) {
+                setInsert(insert, user, dataType.createEntry(null, value, entry.getExpiration()));
+                insert.execute();
+            } catch (SQLException e) {
+                SaveData.log(4, "Cannot insert number value of data type '" + key + "' for user " + user + ", it will be updated again");
+                return null;
+            }
+            return value;
+        }
+        // The row is locked by the update until commit, so the selected value is the result of this operation
+        int id = -1;
+        String saved = null;
+        try (PreparedStatement stmt = con.prepareStatement(getSelectEntryStatement())) {
+            setUser(stmt, 1, user);
+            stmt.setString(2, key);
+            final ResultSet result = stmt.executeQuery();
+            if (result.next()) {
+                id = result.getInt("id");
+                saved = result.getString("value");
+            }
+        }
+        if (saved == null) {
+            return null;
+        }
+        final N value = dataType.load(saved);
+        if (!dataType.save(value).equals(saved)) {
+            // Database arithmetic may not write the same text as the data type, so the value is written again as the data type does
+            try (PreparedStatement update = con.prepareStatement(getUpdateStatement())) {
+                setUpdate(update, dataType.createEntry(id, value, entry.getExpiration()));
+                update.execute();
+            }
+        } else if (this.numericColumn) {
+            try (PreparedStatement update = con.prepareStatement(getUpdateNumericStatement())) {
+                setNumeric(update, 1, dataType.createEntry(id, value, null));
+                update.setInt(2, id);
+                update.execute();
+            }
+        }
+        return value;
+    }
+
+    @Nullable
+    private String getNumberExpression(@NotNull NumberDataType<?> dataType, @NotNull DataOperator operator) {
+        final String operation;
+        switch (operator) {
+            case ADD:
+            case RAW_ADD:
+                operation = " + ?";
+                break;
+            case SUBTRACT:
+            case RAW_SUBTRACT:
+                operation = " - ?";
+                break;
+            case MULTIPLY:
+            case RAW_MULTIPLY:
+                operation = " * ?";
+                break;
+            case DIVIDE:
+            case RAW_DIVIDE:
+                operation = " / ?";
+                break;
+            default:
+                return null;
+        }
+        final boolean floating = dataType instanceof DoubleDataType;
+        final boolean integer = dataType instanceof LongDataType || dataType instanceof BigIntegerDataType;
+        final String column = this.type == SqlType.POSTGRESQL ? "\"value\"" : "`value`";
+        String expression;
+        switch (this.type) {
+            case MYSQL:
+            case MARIADB:
+                expression = "CAST(" + column + " AS " + (floating ? "DOUBLE" : integer ? "DECIMAL(65, 0)" : "DECIMAL(65, 30)") + ")" + operation;
+                if (integer && operation.equals(" / ?")) {
+                    expression = "TRUNCATE(" + expression + ", 0)";
+                }
+                break;
+            case POSTGRESQL:
+                expression = "CAST(" + column + " AS " + (floating ? "DOUBLE PRECISION" : "NUMERIC") + ")" + operation;
+                if (integer && operation.equals(" / ?")) {
+                    expression = "TRUNC(" + expression + ")";
+                }
+                break;
+            case H2:
+                expression = "CAST(" + column + " AS " + (floating ? "DOUBLE PRECISION" : integer ? "NUMERIC(100, 0)" : "NUMERIC(100, 30)") + ")" + operation;
+                if (integer && operation.equals(" / ?")) {
+                    expression = "TRUNCATE(" + expression + ", 0)";
+                }
+                break;
+            case SQLITE:
+                // Integer division is already truncated
+                expression = "CAST(" + column + " AS " + (integer ? "INTEGER" : "REAL") + ")" + operation;
+                break;
+            default:
+                return null;
+        }
+        // The value is clamped like the data type does
+        final boolean sqlite = this.type == SqlType.SQLITE;
+        if (dataType.hasMin() || dataType instanceof LongDataType || dataType instanceof DoubleDataType) {
+            expression = (sqlite ? "MAX(" : "GREATEST(") + expression + ", " + toLiteral(dataType.getMin()) + ")";
+        }
+        if (dataType.hasMax() || dataType instanceof LongDataType || dataType instanceof DoubleDataType) {
+            expression = (sqlite ? "MIN(" : "LEAST(") + expression + ", " + toLiteral(dataType.getMax()) + ")";
+        }
+        if (dataType instanceof LongDataType && !sqlite) {
+            // Integral values are written without decimals, the value is already clamped to long range
+            expression = "CAST(" + expression + " AS " + (this.type == SqlType.MYSQL || this.type == SqlType.MARIADB ? "SIGNED" : "BIGINT") + ")";
+        } else if (dataType instanceof BigIntegerDataType && this.type == SqlType.POSTGRESQL) {
+            expression = "TRUNC(" + expression + ")";
+        }
+        switch (this.type) {
+            case MYSQL:
+            case MARIADB:
+                return "CAST(" + expression + " AS CHAR)";
+            case H2:
+                return "CAST(" + expression + " AS VARCHAR)";
+            default:
+                return "CAST(" + expression + " AS TEXT)";
+        }
+    }
+
+    @NotNull
+    private static String toLiteral(@NotNull Number number) {
+        if (number instanceof BigDecimal) {
+            return ((BigDecimal) number).toPlainString();
+        } else if (number instanceof Double || number instanceof Float) {
+            return new BigDecimal(number.doubleValue()).toPlainString();
+        }
+        return number.toString();
+    }
+
+    @Override
+    public int purgeExpired(long time, int limit, @NotNull BiConsumer<UUID, String> consumer) {
+        final Integer purged = connect(con -> {
+            final Map<Integer, Dual<UUID, String>> expired = new HashMap<>();
+            final List<Dual<UUID, String>> elements = new ArrayList<>();
+            try (PreparedStatement stmt = con.prepareStatement(getSelectExpiredStatement())) {
+                stmt.setLong(1, time);
+                stmt.setInt(2, limit);
+                final ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                    final UUID user = getUser(result, "user");
+                    final Dual<UUID, String> entry = Dual.of(user, result.getString("key"));
+                    expired.put(result.getInt("id"), entry);
+                    if (user == null) {
+                        continue;
+                    }
+                    if (this.elementTablePresent && ELEMENT_VALUE.equals(result.getString("value"))) {
+                        elements.add(entry);
+                    }
+                }
+            }
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            // The expiration is checked again, so rows updated after the select are kept
+            try (PreparedStatement delete = con.prepareStatement(getDeleteExpiredStatement())) {
+                for (Integer id : expired.keySet()) {
+                    delete.setInt(1, id);
+                    delete.setLong(2, time);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+            for (Dual<UUID, String> entry : elements) {
+                deleteElements(con, entry.getLeft(), entry.getRight());
+            }
+            for (Dual<UUID, String> entry : expired.values()) {
+                if (entry.getLeft() != null) {
+                    consumer.accept(entry.getLeft(), entry.getRight());
+                }
+            }
+            return expired.size();
+        });
+        return purged == null ? 0 : purged;
+    }
+
     private void deleteData(@NotNull Connection con, @NotNull Collection<Integer> entries) throws SQLException {
         try (PreparedStatement delete = con.prepareStatement(getDeleteStatement())) {
             for (Integer id : entries) {
@@ -556,6 +1374,158 @@ public class HikariClient implements DataClient {
         }
     }
 
+    private void deleteData(@NotNull Connection con, @NotNull UUID user, @NotNull Collection<String> keys) throws SQLException {
+        try (PreparedStatement delete = con.prepareStatement(getDeleteEntryStatement())) {
+            for (String key : keys) {
+                setUser(delete, 1, user);
+                delete.setString(2, key);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        }
+    }
+
+    @NotNull
+    private String getUserType(boolean binary) {
+        if (!binary) {
+            return "VARCHAR(36)";
+        }
+        switch (this.type) {
+            case POSTGRESQL:
+            case H2:
+                return "UUID";
+            case SQLITE:
+                return "BLOB";
+            default:
+                return "BINARY(16)";
+        }
+    }
+
+    public boolean isUserBinary() {
+        return userBinary;
+    }
+
+    private void setUser(@NotNull PreparedStatement statement, int index, @NotNull UUID user) throws SQLException {
+        if (!this.userBinary) {
+            statement.setString(index, user.toString());
+        } else if (this.type == SqlType.POSTGRESQL || this.type == SqlType.H2) {
+            statement.setObject(index, user);
+        } else {
+            statement.setBytes(index, ByteBuffer.allocate(16).putLong(user.getMostSignificantBits()).putLong(user.getLeastSignificantBits()).array());
+        }
+    }
+
+    @Nullable
+    private UUID getUser(@NotNull ResultSet result, @NotNull String column) throws SQLException {
+        if (!this.userBinary) {
+            final String user = result.getString(column);
+            try {
+                return user == null ? null : UUID.fromString(user);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        final Object user = result.getObject(column);
+        if (user instanceof UUID) {
+            return (UUID) user;
+        } else if (user instanceof byte[] && ((byte[]) user).length == 16) {
+            final ByteBuffer buffer = ByteBuffer.wrap((byte[]) user);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return null;
+    }
+
+    private boolean isUserBinary(@NotNull Connection con, @NotNull String tableName) throws SQLException {
+        String sql = "SELECT `user` FROM `" + tableName + "` WHERE 1 = 0";
+        if (this.type == SqlType.POSTGRESQL) {
+            sql = sql.replace('`', '"');
+        }
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(sql)) {
+            final String name = set.getMetaData().getColumnTypeName(1).toUpperCase();
+            return !name.contains("CHAR") && !name.contains("TEXT") && !name.contains("CLOB");
+        }
+    }
+
+    private void migrateUser(@NotNull Connection con, @NotNull String tableName, @NotNull String createQuery, @NotNull String selectQuery, @NotNull String insertQuery, @NotNull List<String> columns, @NotNull List<String> indexes) throws SQLException {
+        final String legacyName = tableName + "_legacy";
+        if (isTablePresent(con, legacyName)) {
+            // The previous migration was interrupted, so it's made again from the start
+            SaveData.log(3, "Found unfinished migration of table '" + tableName + "', restarting it...");
+            if (isTablePresent(con, tableName)) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute(this.schema.get(this.type, "drop:table", "{table_name}", tableName));
+                }
+            }
+        } else if (!this.userBinary || isUserBinary(con, tableName)) {
+            return;
+        } else {
+            SaveData.log(3, "Migrating users of table '" + tableName + "' into binary format...");
+            // Index names must be free for the new table
+            for (String index : indexes) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute(this.schema.get(this.type, "drop:index", "{table_name}", tableName, "{index_name}", tableName + index));
+                } catch (SQLException ignored) { }
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute(this.schema.get(this.type, "alter:rename_table", "{table_name}", tableName, "{new_name}", legacyName));
+            }
+        }
+        final boolean currentBinary = this.userBinary;
+        final boolean autoCommit = con.getAutoCommit();
+        this.userBinary = true;
+        try {
+            createTable(con, createQuery);
+            con.setAutoCommit(false);
+            long count = 0;
+            try (PreparedStatement select = con.prepareStatement(this.schema.getSelect(this.type, selectQuery, columns, "{table_name}", legacyName));
+                 PreparedStatement insert = con.prepareStatement(this.schema.get(this.type, insertQuery, "{table_name}", this.tableName))) {
+                select.setFetchSize(1000);
+                final ResultSet result = select.executeQuery();
+                while (result.next()) {
+                    final String user = result.getString(1);
+                    try {
+                        setUser(insert, 1, UUID.fromString(user));
+                    } catch (IllegalArgumentException | NullPointerException e) {
+                        continue;
+                    }
+                    for (int i = 2; i <= columns.size(); i++) {
+                        if (columns.get(i - 1).equals("expiration")) {
+                            final long expiration = result.getLong(i);
+                            if (result.wasNull()) {
+                                insert.setNull(i, java.sql.Types.BIGINT);
+                            } else {
+                                insert.setLong(i, expiration);
+                            }
+                        } else {
+                            insert.setString(i, result.getString(i));
+                        }
+                    }
+                    insert.addBatch();
+                    count++;
+                    // Rows are committed in batches, so a large table doesn't need a huge transaction
+                    if (count % 1000 == 0) {
+                        insert.executeBatch();
+                        con.commit();
+                        SaveData.log(3, "Migrated " + count + " rows from table '" + tableName + "'...");
+                    }
+                }
+                insert.executeBatch();
+                con.commit();
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute(this.schema.get(this.type, "drop:table", "{table_name}", legacyName));
+            }
+            con.commit();
+            SaveData.log(3, "Migrated " + count + " rows from table '" + tableName + "' into binary format");
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+            this.userBinary = currentBinary;
+        }
+    }
+
     private static boolean isTablePresent(@NotNull Connection con, @NotNull String tableName) throws SQLException {
         try (ResultSet set = con.getMetaData().getTables(con.getCatalog(), null, "%", null)) {
             while (set.next()) {
@@ -567,6 +1537,63 @@ public class HikariClient implements DataClient {
         return false;
     }
 
+    private static boolean isIndexPresent(@NotNull Connection con, @NotNull String tableName, @NotNull String indexName) throws SQLException {
+        final DatabaseMetaData meta = con.getMetaData();
+        // Some databases store unquoted identifiers in upper case
+        for (String table : new String[] { tableName, tableName.toUpperCase(), tableName.toLowerCase() }) {
+            try (ResultSet set = meta.getIndexInfo(con.getCatalog(), null, table, false, true)) {
+                while (set.next()) {
+                    final String name = set.getString("INDEX_NAME");
+                    if (name != null && name.equalsIgnoreCase(indexName)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isColumnPresent(@NotNull Connection con, @NotNull String tableName, @NotNull String columnName) throws SQLException {
+        String sql = "SELECT * FROM `" + tableName + "` WHERE 1 = 0";
+        if (this.type == SqlType.POSTGRESQL) {
+            sql = sql.replace('`', '"');
+        }
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(sql)) {
+            final ResultSetMetaData meta = set.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (meta.getColumnName(i).equalsIgnoreCase(columnName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isColumnDecimal(@NotNull Connection con, @NotNull String tableName, @NotNull String columnName) throws SQLException {
+        String sql = "SELECT `" + columnName + "` FROM `" + tableName + "` WHERE 1 = 0";
+        if (this.type == SqlType.POSTGRESQL) {
+            sql = sql.replace('`', '"');
+        }
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(sql)) {
+            final int type = set.getMetaData().getColumnType(1);
+            return type == java.sql.Types.DECIMAL || type == java.sql.Types.NUMERIC;
+        }
+    }
+
+    private boolean isColumnLimited(@NotNull Connection con, @NotNull String tableName, @NotNull String columnName) throws SQLException {
+        String sql = "SELECT `" + columnName + "` FROM `" + tableName + "` WHERE 1 = 0";
+        if (this.type == SqlType.POSTGRESQL) {
+            sql = sql.replace('`', '"');
+        }
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(sql)) {
+            final ResultSetMetaData meta = set.getMetaData();
+            final String name = meta.getColumnTypeName(1).toUpperCase();
+            final int precision = meta.getPrecision(1);
+            // Text columns are reported with their maximum size
+            return name.contains("CHAR") && precision > 0 && precision < 65535;
+        }
+    }
+
     public void connect(@NotNull SqlConsumer consumer) {
         if (hikari == null || hikari.isClosed()) {
             return;
@@ -0,0 +1,594 @@
+package com.saicone.savedata.module.data.client;
+
+import com.saicone.savedata.SaveData;
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataNode;
+import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.module.data.DataClient;
+import com.saicone.savedata.module.data.log.LogRecord;
+import com.saicone.savedata.module.data.log.LogSegment;
+import com.saicone.savedata.module.data.log.LogType;
+import com.saicone.savedata.util.DurationFormatter;
+import com.saicone.settings.node.MapNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Data client that appends every change into log segments instead of rewriting user files.<br>
+ * The position of the latest record of every user data is kept in memory, so loads are direct
+ * reads and tops are a single pass over live records. Old segments are compacted on background
+ * by copying their live records into a single segment.
+ */
+public class LogClient implements DataClient {
+
+    private static final String COMPACT_EXTENSION = ".compact";
+
+    private final String databaseName;
+    private final Path parentFolder;
+
+    private Path folder;
+    private long segmentSize;
+    private boolean fsync;
+    private long compactionInterval;
+    private double compactionThreshold;
+
+    // Segments in write order, new records are only appended into the last one
+    private final List<LogSegment> segments = new ArrayList<>();
+    private final Map<UUID, Map<String, Location>> index = new ConcurrentHashMap<>();
+    // Appends and segment changes are exclusive, while reads can be made at the same time
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private ScheduledFuture<?> compactionTask;
+
+    public LogClient(@NotNull String databaseName, @NotNull Path parentFolder) {
+        this.databaseName = databaseName;
+        this.parentFolder = parentFolder;
+    }
+
+    @Override
+    public void onLoad(@NotNull MapNode config) {
+        this.segmentSize = Math.max(1L, config.getRegex("(?i)segment-?size").asLong(16L)) * 1024L * 1024L;
+        this.fsync = config.getRegex("(?i)f?sync").asBoolean(false);
+        this.compactionInterval = DurationFormatter.format(config.getRegex("(?i)compaction-?(interval|delay)").asString("10 MINUTES"), TimeUnit.MILLISECONDS);
+        this.compactionThreshold = config.getRegex("(?i)compaction-?threshold").asDouble(0.5D);
+        this.folder = this.parentFolder.resolve("database").resolve(this.databaseName).resolve("log");
+    }
+
+    @Override
+    public void onStart() {
+        try {
+            Files.createDirectories(this.folder);
+        } catch (IOException e) {
+            SaveData.logException(1, e, "Cannot create database folder");
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            openSegments();
+        } catch (IOException e) {
+            SaveData.logException(1, e, "Cannot open log segments of database '" + this.databaseName + "'");
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if (this.compactionInterval > 0) {
+            this.compactionTask = SaveData.get().getDataCore().getScheduler().scheduleWithFixedDelay(this::compact, this.compactionInterval, this.compactionInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void onClose() {
+        if (this.compactionTask != null) {
+            this.compactionTask.cancel(false);
+            this.compactionTask = null;
+        }
+        synchronized (this.compactionLock) {
+            this.lock.writeLock().lock();
+            try {
+                for (LogSegment segment : this.segments) {
+                    segment.close();
+                }
+                this.segments.clear();
+                this.index.clear();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @NotNull
+    @Override
+    public LogType getType() {
+        return LogType.SEGMENTED;
+    }
+
+    @NotNull
+    public Path getFolder() {
+        return folder;
+    }
+
+    public int getSegmentCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.segments.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void openSegments() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder)) {
+            for (Path path : stream) {
+                if (path.getFileName().toString().endsWith(COMPACT_EXTENSION)) {
+                    // Unfinished compaction, the original segments are still there
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                final Long id = LogSegment.getId(path);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        ids.sort(Comparator.naturalOrder());
+        for (Long id : ids) {
+            final LogSegment segment = LogSegment.open(this.folder, id);
+            this.segments.add(segment);
+            // Later records replace the earlier ones, so replaying every segment in order gives the latest data
+            segment.scan((record, position, length) -> {
+                if (record.isDeletion()) {
+                    remove(record.getUser(), record.getKey());
+                } else {
+                    this.index.computeIfAbsent(record.getUser(), __ -> new ConcurrentHashMap<>()).put(record.getKey(), new Location(segment, position, length, record.getExpiration()));
+                }
+            });
+        }
+        for (Map<String, Location> locations : this.index.values()) {
+            for (Location location : locations.values()) {
+                location.segment.addLive(location.length);
+            }
+        }
+        if (this.segments.isEmpty()) {
+            this.segments.add(LogSegment.open(this.folder, 0L));
+        }
+        SaveData.log(3, "Loaded " + this.index.size() + " user" + (this.index.size() == 1 ? "" : "s") + " from " + this.segments.size() + " log segment" + (this.segments.size() == 1 ? "" : "s") + " of database '" + this.databaseName + "'");
+    }
+
+    private boolean contains(@NotNull UUID user, @NotNull String key) {
+        final Map<String, Location> locations = this.index.get(user);
+        return locations != null && locations.containsKey(key);
+    }
+
+    @Nullable
+    private Location remove(@NotNull UUID user, @NotNull String key) {
+        final Location[] removed = new Location[1];
+        this.index.computeIfPresent(user, (__, locations) -> {
+            removed[0] = locations.remove(key);
+            return locations.isEmpty() ? null : locations;
+        });
+        return removed[0];
+    }
+
+    private void append(@NotNull List<LogRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        final List<byte[]> frames = new ArrayList<>(records.size());
+        try {
+            for (LogRecord record : records) {
+                frames.add(record.encode());
+            }
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot encode data of user " + records.get(0).getUser());
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            if (this.segments.isEmpty()) {
+                throw new IllegalStateException("The database '" + this.databaseName + "' is not started");
+            }
+            LogSegment segment = this.segments.get(this.segments.size() - 1);
+            for (int i = 0; i < records.size(); i++) {
+                final LogRecord record = records.get(i);
+                final byte[] frame = frames.get(i);
+                if (segment.getSize() > 0 && segment.getSize() + frame.length > this.segmentSize) {
+                    if (this.fsync) {
+                        segment.force();
+                    }
+                    segment = LogSegment.open(this.folder, segment.getId() + 1);
+                    this.segments.add(segment);
+                }
+                final Location old;
+                if (record.isDeletion()) {
+                    if (!contains(record.getUser(), record.getKey())) {
+                        // Nothing to delete
+                        continue;
+                    }
+                    segment.append(frame);
+                    old = remove(record.getUser(), record.getKey());
+                } else {
+                    final long position = segment.append(frame);
+                    segment.addLive(frame.length);
+                    old = this.index.computeIfAbsent(record.getUser(), __ -> new ConcurrentHashMap<>()).put(record.getKey(), new Location(segment, position, frame.length, record.getExpiration()));
+                }
+                if (old != null) {
+                    old.segment.addLive(-old.length);
+                }
+            }
+            if (this.fsync) {
+                segment.force();
+            }
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot append data of user " + records.get(0).getUser() + " into log segment");
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Nullable
+    private LogRecord read(@NotNull Location location) {
+        try {
+            return LogRecord.decode(location.segment.read(location.position, location.length));
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot read record from " + location.segment.getFile().getFileName());
+            return null;
+        }
+    }
+
+    @Override
+    public @NotNull DataNode loadData(@NotNull UUID user, @NotNull Function<String, DataType<Object>> dataProvider) {
+        final DataNode node = new DataNode(this.databaseName);
+        final long time = System.currentTimeMillis();
+        this.lock.readLock().lock();
+        try {
+            final Map<String, Location> locations = this.index.get(user);
+            if (locations == null) {
+                return node;
+            }
+            for (Map.Entry<String, Location> entry : locations.entrySet()) {
+                final String key = entry.getKey();
+                final DataType<Object> dataType = dataProvider.apply(key);
+                if (dataType == null) {
+                    SaveData.log(2, "Found invalid data type '" + key + "' for user " + user + ", ignoring it...");
+                    continue;
+                }
+                final Location location = entry.getValue();
+                if (location.isExpired(time)) {
+                    // Expired records are deleted by purge or replaced on save
+                    continue;
+                }
+                final DataEntry<Object> dataEntry = loadEntry(user, location, dataType);
+                if (dataEntry != null) {
+                    node.put(key, dataEntry);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return node;
+    }
+
+    @Override
+    public @Nullable <T> DataEntry<T> loadDataEntry(@NotNull UUID user, @NotNull String key, @NotNull DataType<T> dataType) {
+        this.lock.readLock().lock();
+        try {
+            final Map<String, Location> locations = this.index.get(user);
+            final Location location = locations == null ? null : locations.get(key);
+            if (location == null || location.isExpired(System.currentTimeMillis())) {
+                return null;
+            }
+            return loadEntry(user, location, dataType);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    private <T> DataEntry<T> loadEntry(@NotNull UUID user, @NotNull Location location, @NotNull DataType<T> dataType) {
+        final LogRecord record = read(location);
+        if (record == null) {
+            return null;
+        }
+        final String value = record.getValue();
+        final T parsedValue;
+        try {
+            parsedValue = dataType.load(value);
+        } catch (Throwable t) {
+            SaveData.log(2, () -> "Cannot parse value '" + value + "' with data type " + record.getType() + " as " +  dataType.getTypeName() + " for user " + user + ", ignoring it...");
+            return null;
+        }
+        final DataEntry<T> entry = dataType.createEntry(null, parsedValue, record.getExpiration());
+        if (dataType.isOutdated(value)) {
+            entry.setEdited(true);
+        }
+        return entry;
+    }
+
+    @Override
+    public void loadUsers(@NotNull Consumer<UUID> consumer) {
+        this.index.keySet().forEach(consumer);
+    }
+
+    @Override
+    public @NotNull <T> Map<UUID, T> loadTopEntry(@NotNull String key, @NotNull DataType<T> dataType) {
+        final Map<UUID, T> data = new HashMap<>();
+        final long time = System.currentTimeMillis();
+        this.lock.readLock().lock();
+        try {
+            final List<Location> locations = new ArrayList<>();
+            for (Map<String, Location> userLocations : this.index.values()) {
+                final Location location = userLocations.get(key);
+                if (location != null && !location.isExpired(time)) {
+                    locations.add(location);
+                }
+            }
+            // Records are read in file order, so the top is loaded with a sequential pass over segments
+            locations.sort(Comparator.comparingLong((Location location) -> location.segment.getId()).thenComparingLong(location -> location.position));
+            for (Location location : locations) {
+                final LogRecord record = read(location);
+                if (record == null) {
+                    continue;
+                }
+                final T parsedValue;
+                try {
+                    parsedValue = dataType.load(record.getValue());
+                } catch (Throwable t) {
+                    continue;
+                }
+                data.put(record.getUser(), parsedValue);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return data;
+    }
+
+    @Override
+    public int purgeExpired(long time, int limit, @NotNull BiConsumer<UUID, String> consumer) {
+        // Expirations are kept on index, so expired records are found without reading the segments
+        final List<LogRecord> expired = new ArrayList<>();
+        // Writes are blocked until the deletions are appended, so data saved after the lookup is kept
+        this.lock.writeLock().lock();
+        try {
+            for (Map.Entry<UUID, Map<String, Location>> entry : this.index.entrySet()) {
+                for (Map.Entry<String, Location> location : entry.getValue().entrySet()) {
+                    if (expired.size() >= limit) {
+                        break;
+                    }
+                    if (location.getValue().isExpired(time)) {
+                        expired.add(new LogRecord(entry.getKey(), location.getKey()));
+                    }
+                }
+            }
+            append(expired);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        for (LogRecord record : expired) {
+            consumer.accept(record.getUser(), record.getKey());
+        }
+        return expired.size();
+    }
+
+    @Override
+    public void saveData(@NotNull UUID user, @NotNull DataNode node) {
+        final List<LogRecord> records = new ArrayList<>();
+        final Map<String, Location> locations = this.index.get(user);
+        if (node.isEmpty()) {
+            // Empty data is deleted
+            if (locations != null) {
+                for (String key : locations.keySet()) {
+                    records.add(new LogRecord(user, key));
+                }
+            }
+            append(records);
+            return;
+        }
+        for (Map.Entry<String, DataEntry<?>> entry : node.entrySet()) {
+            final DataEntry<?> dataEntry = entry.getValue();
+            final boolean present = locations != null && locations.containsKey(dataEntry.getType().getId());
+            // Unchanged data is already on log
+            if (dataEntry.getValue() == null ? present : (dataEntry.isEdited() || !present)) {
+                records.add(toRecord(user, dataEntry));
+            }
+        }
+        append(records);
+    }
+
+    @Override
+    public void saveDataEntry(@NotNull UUID user, @NotNull DataEntry<?> entry) {
+        append(List.of(toRecord(user, entry)));
+    }
+
+    @Override
+    public void deleteDataEntries(@NotNull Map<UUID, List<DataEntry<?>>> entries) {
+        // Every deletion is appended at once
+        final List<LogRecord> records = new ArrayList<>();
+        for (Map.Entry<UUID, List<DataEntry<?>>> entry : entries.entrySet()) {
+            for (DataEntry<?> dataEntry : entry.getValue()) {
+                records.add(new LogRecord(entry.getKey(), dataEntry.getType().getId()));
+            }
+        }
+        append(records);
+    }
+
+    @NotNull
+    private LogRecord toRecord(@NotNull UUID user, @NotNull DataEntry<?> entry) {
+        final String key = entry.getType().getId();
+        if (entry.getValue() == null) {
+            return new LogRecord(user, key);
+        }
+        return new LogRecord(user, key, entry.getType().getTypeName(), entry.getSavedValue(), entry.isTemporary() ? entry.getExpiration() : 0L);
+    }
+
+    @Override
+    public void deleteData(@NotNull Map<String, Object> columns) {
+        throw new RuntimeException("Not yet supported");
+    }
+
+    /**
+     * Compact every segment except the current one if their amount of dead bytes is over the
+     * configured threshold.
+     */
+    public void compact() {
+        compact(false);
+    }
+
+    /**
+     * Copy the live records of every segment except the current one into a single segment.<br>
+     * The records are copied without blocking the writes, the new segment takes the id of the
+     * oldest compacted segment, so an interrupted compaction never hides newer records.
+     *
+     * @param force true to compact without checking the dead bytes threshold.
+     */
+    public void compact(boolean force) {
+        synchronized (this.compactionLock) {
+            try {
+                compact0(force);
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot compact log segments of database '" + this.databaseName + "'");
+            }
+        }
+    }
+
+    private void compact0(boolean force) throws IOException {
+        final List<LogSegment> sealed;
+        this.lock.readLock().lock();
+        try {
+            if (this.segments.size() < 2) {
+                return;
+            }
+            sealed = new ArrayList<>(this.segments.subList(0, this.segments.size() - 1));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        long size = 0;
+        long live = 0;
+        for (LogSegment segment : sealed) {
+            size += segment.getSize();
+            live += segment.getLiveBytes();
+        }
+        if (size <= 0 || (!force && (double) (size - live) / size < this.compactionThreshold)) {
+            return;
+        }
+
+        final Set<LogSegment> compacted = new HashSet<>(sealed);
+        final LogSegment first = sealed.get(0);
+        final Path target = first.getFile();
+        final Path temp = target.resolveSibling(target.getFileName() + COMPACT_EXTENSION);
+        final List<Move> moves = new ArrayList<>();
+        Files.deleteIfExists(temp);
+        // Sealed segments are never written, so their records are copied without the lock
+        final LogSegment output = new LogSegment(first.getId(), temp);
+        try {
+            for (Map.Entry<UUID, Map<String, Location>> entry : this.index.entrySet()) {
+                for (Map.Entry<String, Location> location : entry.getValue().entrySet()) {
+                    final Location from = location.getValue();
+                    if (!compacted.contains(from.segment)) {
+                        continue;
+                    }
+                    final long position = output.append(from.segment.read(from.position, from.length));
+                    moves.add(new Move(entry.getKey(), location.getKey(), from, position));
+                }
+            }
+            output.force();
+        } catch (IOException e) {
+            output.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        output.close();
+
+        this.lock.writeLock().lock();
+        try {
+            for (LogSegment segment : sealed) {
+                segment.close();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            final LogSegment segment = LogSegment.open(this.folder, first.getId());
+            for (Move move : moves) {
+                final Location location = new Location(segment, move.position, move.from.length, move.from.expiration);
+                final Map<String, Location> locations = this.index.get(move.user);
+                // Records written while copying already replaced the old location
+                if (locations != null && locations.replace(move.key, move.from, location)) {
+                    segment.addLive(location.length);
+                }
+            }
+            // Older segments are deleted first, so the remaining ones always replay into the latest data
+            for (int i = 1; i < sealed.size(); i++) {
+                Files.deleteIfExists(sealed.get(i).getFile());
+            }
+            this.segments.removeAll(sealed);
+            this.segments.add(0, segment);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        SaveData.log(4, "Compacted " + sealed.size() + " log segment" + (sealed.size() == 1 ? "" : "s") + " of database '" + this.databaseName + "' from " + size + " to " + live + " bytes");
+    }
+
+    private static final class Location {
+
+        private final LogSegment segment;
+        private final long position;
+        private final int length;
+        private final long expiration;
+
+        Location(@NotNull LogSegment segment, long position, int length, long expiration) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(long time) {
+            return expiration > 0 && time >= expiration;
+        }
+    }
+
+    private static final class Move {
+
+        private final UUID user;
+        private final String key;
+        private final Location from;
+        private final long position;
+
+        Move(@NotNull UUID user, @NotNull String key, @NotNull Location from, long position) {
+            this.user = user;
+            this.key = key;
+            this.from = from;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.saicone.savedata.module.data.file;
+
+import com.saicone.savedata.api.data.type.ElementCodec;
+import com.saicone.settings.Settings;
+import com.saicone.settings.SettingsNode;
+import com.saicone.settings.node.MapNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for user files.<br>
+ * The file is made by a header, a key dictionary with the offset of every record and the records
+ * itself, so a single data type can be read without decoding the full file.<br>
+ * Every record has flags, an optional type name, an optional expiration and a typed value, integer
+ * numbers are written as zigzag varints and decimal numbers as doubles, any other value is written
+ * as text.
+ */
+public class BinaryFile {
+
+    private static final int MAGIC = 0x53444246; // SDBF
+    private static final int VERSION = 1;
+
+    private static final int VALUE_STRING = 0;
+    private static final int VALUE_LONG = 1;
+    private static final int VALUE_DOUBLE = 2;
+    private static final int VALUE_MASK = 0x03;
+    private static final int FLAG_TYPE = 0x04;
+    private static final int FLAG_EXPIRATION = 0x08;
+
+    private BinaryFile() {
+    }
+
+    @NotNull
+    public static Map<String, Record> read(@NotNull Path file) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return new LinkedHashMap<>();
+        }
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final DataInputStream in = new DataInputStream(input);
+        final int count = readHeader(in);
+        final List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(ElementCodec.readString(in));
+            ElementCodec.readVarInt(in);
+        }
+        final Map<String, Record> records = new LinkedHashMap<>();
+        for (String key : keys) {
+            records.put(key, readRecord(in));
+        }
+        return records;
+    }
+
+    @Nullable
+    public static Record read(@NotNull Path file, @NotNull String key) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final DataInputStream in = new DataInputStream(input);
+        final int count = readHeader(in);
+        int offset = -1;
+        for (int i = 0; i < count; i++) {
+            final String name = ElementCodec.readString(in);
+            final int recordOffset = ElementCodec.readVarInt(in);
+            if (offset < 0 && name.equals(key)) {
+                offset = recordOffset;
+            }
+        }
+        if (offset < 0) {
+            return null;
+        }
+        // The records start where the dictionary ends
+        final int start = bytes.length - input.available();
+        if (start + offset >= bytes.length) {
+            throw new IOException("Invalid record offset for key '" + key + "'");
+        }
+        final DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes, start + offset, bytes.length - start - offset));
+        return readRecord(record);
+    }
+
+    private static int readHeader(@NotNull DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("The file is not a binary data file");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary data file version: " + version);
+        }
+        return ElementCodec.readVarInt(in);
+    }
+
+    @NotNull
+    private static Record readRecord(@NotNull DataInputStream in) throws IOException {
+        final int flags = in.readUnsignedByte();
+        final String type = (flags & FLAG_TYPE) != 0 ? ElementCodec.readString(in) : null;
+        final long expiration = (flags & FLAG_EXPIRATION) != 0 ? ElementCodec.readVarLong(in) : 0L;
+        final String value;
+        switch (flags & VALUE_MASK) {
+            case VALUE_LONG:
+                value = String.valueOf(ElementCodec.unzigzag(ElementCodec.readVarLong(in)));
+                break;
+            case VALUE_DOUBLE:
+                value = String.valueOf(in.readDouble());
+                break;
+            default:
+                value = ElementCodec.readString(in);
+                break;
+        }
+        return new Record(type, value, expiration);
+    }
+
+    public static void write(@NotNull OutputStream out, @NotNull MapNode map) throws IOException {
+        final Map<String, Record> records = new LinkedHashMap<>();
+        for (Map.Entry<String, SettingsNode> entry : map.getValue().entrySet()) {
+            if (!entry.getValue().isMap()) {
+                continue;
+            }
+            final MapNode node = entry.getValue().asMapNode();
+            final String value = node.getIgnoreCase("value").asString();
+            if (value == null) {
+                continue;
+            }
+            records.put(entry.getKey(), new Record(node.getIgnoreCase("type").asString(), value, node.getIgnoreCase("expiration").asLong(0L)));
+        }
+        write(out, records);
+    }
+
+    public static void write(@NotNull OutputStream out, @NotNull Map<String, Record> records) throws IOException {
+        // Records are written first, so the dictionary can have their offsets
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final DataOutputStream dataOut = new DataOutputStream(data);
+        final Map<String, Integer> offsets = new LinkedHashMap<>();
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            offsets.put(entry.getKey(), dataOut.size());
+            writeRecord(dataOut, entry.getValue());
+        }
+        dataOut.flush();
+
+        final DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        ElementCodec.writeVarInt(output, offsets.size());
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            ElementCodec.writeString(output, entry.getKey());
+            ElementCodec.writeVarInt(output, entry.getValue());
+        }
+        data.writeTo(output);
+        output.flush();
+    }
+
+    private static void writeRecord(@NotNull DataOutputStream out, @NotNull Record record) throws IOException {
+        final String value = record.getValue();
+        int flags = VALUE_STRING;
+        Long longValue = null;
+        Double doubleValue = null;
+        // Only values that are written back exactly as the same text are stored as numbers
+        try {
+            final long l = Long.parseLong(value);
+            if (Long.toString(l).equals(value)) {
+                longValue = l;
+                flags = VALUE_LONG;
+            }
+        } catch (NumberFormatException e) {
+            try {
+                final double d = Double.parseDouble(value);
+                if (Double.toString(d).equals(value)) {
+                    doubleValue = d;
+                    flags = VALUE_DOUBLE;
+                }
+            } catch (NumberFormatException ignored) { }
+        }
+        if (record.getType() != null) {
+            flags |= FLAG_TYPE;
+        }
+        if (record.getExpiration() > 0) {
+            flags |= FLAG_EXPIRATION;
+        }
+        out.writeByte(flags);
+        if (record.getType() != null) {
+            ElementCodec.writeString(out, record.getType());
+        }
+        if (record.getExpiration() > 0) {
+            ElementCodec.writeVarLong(out, record.getExpiration());
+        }
+        if (longValue != null) {
+            ElementCodec.writeVarLong(out, ElementCodec.zigzag(longValue));
+        } else if (doubleValue != null) {
+            out.writeDouble(doubleValue);
+        } else {
+            ElementCodec.writeString(out, value);
+        }
+    }
+
+    @NotNull
+    public static Settings toSettings(@NotNull Map<String, Record> records) {
+        final Settings settings = new Settings();
+        final MapNode map = settings.asMapNode();
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            final Record record = entry.getValue();
+            final MapNode node = new MapNode();
+            if (record.getType() != null) {
+                node.put("type", record.getType());
+            }
+            node.put("value", record.getValue());
+            if (record.getExpiration() > 0) {
+                node.put("expiration", record.getExpiration());
+            }
+            map.put(entry.getKey(), node);
+        }
+        return settings;
+    }
+
+    public static final class Record {
+
+        private final String type;
+        private final String value;
+        private final long expiration;
+
+        public Record(@Nullable String type, @NotNull String value, long expiration) {
+            this.type = type;
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+        @Nullable
+        public String getType() {
+            return type;
+        }
+
+        @NotNull
+        public String getValue() {
+            return value;
+        }
+
+        public long getExpiration() {
+            return expiration;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Map;
 
 public enum FileType implements ClientType {
 
+    BINARY("bin"),
     HOCON(
             "conf",
             "com.saicone.settings.source.HoconSettingsSource",
@@ -49,6 +50,14 @@ public enum FileType implements ClientType {
     private final String dependency;
     private final Map<String, String> relocations;
 
+    FileType(@NotNull String extension) {
+        // Built-in format, it doesn't need any settings source
+        this.extension = extension;
+        this.source = null;
+        this.dependency = null;
+        this.relocations = Map.of();
+    }
+
     FileType(@NotNull String extension, @NotNull String source, @NotNull String dependency, @NotNull Map<String, String> relocations) {
         this.extension = extension;
         this.source = source;
@@ -59,6 +68,9 @@ public enum FileType implements ClientType {
 
     @Override
     public boolean isDependencyPresent() {
+        if (source == null) {
+            return true;
+        }
         try {
             Class.forName(source);
             return true;
@@ -77,13 +89,17 @@ public enum FileType implements ClientType {
         return extension;
     }
 
-    @NotNull
+    public boolean isBinary() {
+        return source == null;
+    }
+
+    @Nullable
     public String getSource() {
         return source;
     }
 
     @Override
-    public @NotNull String getDependency() {
+    public @Nullable String getDependency() {
         return dependency;
     }
 
@@ -99,6 +115,9 @@ public enum FileType implements ClientType {
 
     @NotNull
     public SettingsSource createSource() {
+        if (source == null) {
+            throw new IllegalStateException("The file type " + name() + " doesn't use a SettingsSource");
+        }
         try {
             return (SettingsSource) Class.forName(source).getDeclaredConstructor().newInstance();
         } catch (ClassNotFoundException | InvocationTargetException | InstantiationException | IllegalAccessException | NoSuchMethodException e) {
@@ -0,0 +1,241 @@
+package com.saicone.savedata.module.data.file;
+
+import com.saicone.savedata.SaveData;
+import com.saicone.settings.Settings;
+import com.saicone.settings.SettingsData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File writer that never overwrites a user file in place.<br>
+ * Every file is written into a temporary file and then renamed over the original one, so a crash
+ * mid-write leaves the previous file untouched.<br>
+ * If a commit interval is set, the files saved on the same window are written together, with a
+ * single sync barrier before the rename of all of them.
+ */
+public class GroupCommitWriter {
+
+    private final long interval;
+    private final boolean fsync;
+    private final Encoder encoder;
+
+    private final Map<UUID, Pending> pending = new LinkedHashMap<>();
+    // Grouped commits are made one at a time, so a file is never renamed by two commits at once
+    private final Object commitLock = new Object();
+
+    private ScheduledFuture<?> task;
+
+    public GroupCommitWriter(long interval, boolean fsync) {
+        this(interval, fsync, null);
+    }
+
+    public GroupCommitWriter(long interval, boolean fsync, @Nullable Encoder encoder) {
+        this.interval = interval;
+        this.fsync = fsync;
+        this.encoder = encoder;
+    }
+
+    public void start(@NotNull ScheduledExecutorService scheduler) {
+        stop();
+        if (this.interval > 0) {
+            this.task = scheduler.scheduleWithFixedDelay(this::flush, this.interval, this.interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+        flush();
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Nullable
+    public synchronized SettingsData<Settings> getPending(@NotNull UUID user) {
+        final Pending write = this.pending.get(user);
+        return write == null ? null : write.data;
+    }
+
+    /**
+     * Write the provided user data, the file is deleted if the data is empty.
+     *
+     * @param user  the file owner.
+     * @param data  the data to write.
+     * @param after the action to run once the file is written.
+     */
+    public void write(@NotNull UUID user, @NotNull SettingsData<Settings> data, @Nullable Runnable after) {
+        final Pending write = new Pending(data, after);
+        if (this.interval <= 0) {
+            // The same file is never written by two threads at once
+            synchronized (data) {
+                commit(List.of(write));
+            }
+            return;
+        }
+        synchronized (this) {
+            // The data is serialized on commit, so repeated writes of the same user are merged
+            this.pending.put(user, write);
+        }
+    }
+
+    public void flush(@NotNull UUID user) {
+        final Pending write;
+        synchronized (this) {
+            write = this.pending.remove(user);
+        }
+        if (write != null) {
+            synchronized (this.commitLock) {
+                commit(List.of(write));
+            }
+        }
+    }
+
+    public void flush() {
+        final List<Pending> writes;
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            writes = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+        }
+        synchronized (this.commitLock) {
+            commit(writes);
+        }
+    }
+
+    private void commit(@NotNull Collection<Pending> writes) {
+        final List<Pending> written = new ArrayList<>(writes.size());
+        final Set<Path> folders = new LinkedHashSet<>();
+        for (Pending write : writes) {
+            final Path file = write.data.getFile().toPath();
+            try {
+                synchronized (write.data) {
+                    if (write.data.getLoaded() == null || write.data.getLoaded().isEmpty()) {
+                        Files.deleteIfExists(file);
+                        folders.add(file.getParent());
+                        write.run();
+                        continue;
+                    }
+                    Files.createDirectories(file.getParent());
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(write.temp))) {
+                        if (this.encoder != null) {
+                            this.encoder.write(out, write.data.getLoaded());
+                        } else {
+                            // Text files are written by the same source used to load them
+                            final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                            write.data.getSource().write(writer, write.data.getLoaded());
+                            writer.flush();
+                        }
+                    }
+                }
+                written.add(write);
+            } catch (Throwable t) {
+                SaveData.logException(2, t, "Cannot write file " + file);
+                deleteTemp(write);
+            }
+        }
+        if (this.fsync) {
+            // Sync barrier, every temporary file is on disk before any rename
+            for (Pending write : written) {
+                try (FileChannel channel = FileChannel.open(write.temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                } catch (IOException e) {
+                    SaveData.logException(2, e, "Cannot sync file " + write.temp);
+                }
+            }
+        }
+        for (Pending write : written) {
+            final Path file = write.data.getFile().toPath();
+            try {
+                try {
+                    Files.move(write.temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(write.temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                folders.add(file.getParent());
+                write.run();
+            } catch (IOException e) {
+                SaveData.logException(2, e, "Cannot replace file " + file);
+                deleteTemp(write);
+            }
+        }
+        if (this.fsync) {
+            // Renames are folder changes, so every folder is synced once
+            for (Path folder : folders) {
+                try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+                    channel.force(true);
+                } catch (IOException ignored) {
+                    // Not every platform allows folder sync
+                }
+            }
+        }
+    }
+
+    private void deleteTemp(@NotNull Pending write) {
+        try {
+            Files.deleteIfExists(write.temp);
+        } catch (IOException ignored) { }
+    }
+
+    @FunctionalInterface
+    public interface Encoder {
+        void write(@NotNull OutputStream out, @NotNull Settings settings) throws IOException;
+    }
+
+    private static final class Pending {
+
+        private final SettingsData<Settings> data;
+        private final Runnable after;
+        private final Path temp;
+
+        Pending(@NotNull SettingsData<Settings> data, @Nullable Runnable after) {
+            this.data = data;
+            this.after = after;
+            final Path file = data.getFile().toPath();
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        }
+
+        void run() {
+            if (this.after != null) {
+                this.after.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.saicone.savedata.module.data.log;
+
+import com.saicone.savedata.api.data.type.ElementCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A single data change written into a log segment.<br>
+ * Every record is framed by its payload length and checksum, so a torn write at the end of a
+ * segment is detected on startup. A record without value is a deletion.
+ */
+public final class LogRecord {
+
+    // Frame header: payload length and checksum
+    public static final int HEADER_SIZE = 8;
+
+    private static final int FLAG_VALUE = 0x01;
+    private static final int FLAG_TYPE = 0x02;
+    private static final int FLAG_EXPIRATION = 0x04;
+
+    private final UUID user;
+    private final String key;
+    private final String type;
+    private final String value;
+    private final long expiration;
+
+    public LogRecord(@NotNull UUID user, @NotNull String key) {
+        this(user, key, null, null, 0L);
+    }
+
+    public LogRecord(@NotNull UUID user, @NotNull String key, @Nullable String type, @Nullable String value, long expiration) {
+        this.user = user;
+        this.key = key;
+        this.type = type;
+        this.value = value;
+        this.expiration = expiration;
+    }
+
+    @NotNull
+    public UUID getUser() {
+        return user;
+    }
+
+    @NotNull
+    public String getKey() {
+        return key;
+    }
+
+    @Nullable
+    public String getType() {
+        return type;
+    }
+
+    @Nullable
+    public String getValue() {
+        return value;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public boolean isDeletion() {
+        return value == null;
+    }
+
+    @NotNull
+    public byte[] encode() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        int flags = 0;
+        if (this.value != null) {
+            flags |= FLAG_VALUE;
+        }
+        if (this.type != null) {
+            flags |= FLAG_TYPE;
+        }
+        if (this.expiration > 0) {
+            flags |= FLAG_EXPIRATION;
+        }
+        out.writeByte(flags);
+        out.writeLong(this.user.getMostSignificantBits());
+        out.writeLong(this.user.getLeastSignificantBits());
+        ElementCodec.writeString(out, this.key);
+        if (this.type != null) {
+            ElementCodec.writeString(out, this.type);
+        }
+        if (this.expiration > 0) {
+            ElementCodec.writeVarLong(out, this.expiration);
+        }
+        if (this.value != null) {
+            ElementCodec.writeString(out, this.value);
+        }
+        out.flush();
+        final byte[] payload = bytes.toByteArray();
+
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt(checksum(payload, 0, payload.length));
+        frame.put(payload);
+        return frame.array();
+    }
+
+    /**
+     * Decode a full record frame.
+     *
+     * @param frame the bytes that start with the frame header.
+     * @return      a record, or null if the frame is incomplete or its checksum doesn't match.
+     * @throws IOException if the payload cannot be read.
+     */
+    @Nullable
+    public static LogRecord decode(@NotNull byte[] frame) throws IOException {
+        if (frame.length < HEADER_SIZE) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(frame);
+        final int length = buffer.getInt();
+        final int crc = buffer.getInt();
+        if (length < 0 || HEADER_SIZE + length > frame.length || checksum(frame, HEADER_SIZE, length) != crc) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, HEADER_SIZE, length));
+        final int flags = in.readUnsignedByte();
+        final UUID user = new UUID(in.readLong(), in.readLong());
+        final String key = ElementCodec.readString(in);
+        final String type = (flags & FLAG_TYPE) != 0 ? ElementCodec.readString(in) : null;
+        final long expiration = (flags & FLAG_EXPIRATION) != 0 ? ElementCodec.readVarLong(in) : 0L;
+        final String value = (flags & FLAG_VALUE) != 0 ? ElementCodec.readString(in) : null;
+        return new LogRecord(user, key, type, value, expiration);
+    }
+
+    private static int checksum(@NotNull byte[] bytes, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
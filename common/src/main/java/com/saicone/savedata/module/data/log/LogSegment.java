@@ -0,0 +1,179 @@
+package com.saicone.savedata.module.data.log;
+
+import com.saicone.savedata.SaveData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log file, records are never modified once written.<br>
+ * A segment also tracks the amount of bytes that are still used by live records, so the
+ * segments with more dead records can be compacted first.
+ */
+public class LogSegment {
+
+    private static final String PREFIX = "segment-";
+    private static final String EXTENSION = ".log";
+
+    private final long id;
+    private final Path file;
+    private final FileChannel channel;
+    private volatile long size;
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    @NotNull
+    public static LogSegment open(@NotNull Path folder, long id) throws IOException {
+        return new LogSegment(id, getFile(folder, id));
+    }
+
+    @NotNull
+    public static Path getFile(@NotNull Path folder, long id) {
+        // Padded ids are listed in the same order they were created
+        return folder.resolve(PREFIX + String.format("%019d", id) + EXTENSION);
+    }
+
+    @Nullable
+    public static Long getId(@NotNull Path file) {
+        final String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(EXTENSION)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public LogSegment(long id, @NotNull Path file) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = this.channel.size();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NotNull
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    public void addLive(long bytes) {
+        this.liveBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Append the provided bytes at the end of segment.
+     *
+     * @param bytes the bytes to write.
+     * @return      the position where the bytes were written.
+     * @throws IOException if the bytes cannot be written.
+     */
+    public long append(@NotNull byte[] bytes) throws IOException {
+        final long position = this.size;
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += this.channel.write(buffer, offset);
+        }
+        this.size = offset;
+        return position;
+    }
+
+    @NotNull
+    public byte[] read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int read = this.channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + this.file.getFileName());
+            }
+            offset += read;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Read every record of this segment in write order, the segment is truncated at the first
+     * invalid record, since it can only be produced by an interrupted write.
+     *
+     * @param visitor the visitor to accept every valid record.
+     * @throws IOException if the segment cannot be read.
+     */
+    public void scan(@NotNull Visitor visitor) throws IOException {
+        long position = 0;
+        try (InputStream input = Files.newInputStream(this.file); DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+            while (position < this.size) {
+                final int length;
+                final byte[] frame;
+                try {
+                    length = in.readInt();
+                    if (length < 0 || position + LogRecord.HEADER_SIZE + length > this.size) {
+                        break;
+                    }
+                    frame = new byte[LogRecord.HEADER_SIZE + length];
+                    ByteBuffer.wrap(frame).putInt(length);
+                    in.readFully(frame, 4, frame.length - 4);
+                } catch (EOFException e) {
+                    break;
+                }
+                final LogRecord record;
+                try {
+                    record = LogRecord.decode(frame);
+                } catch (IOException e) {
+                    break;
+                }
+                if (record == null) {
+                    break;
+                }
+                visitor.accept(record, position, frame.length);
+                position += frame.length;
+            }
+        }
+        if (position < this.size) {
+            SaveData.log(2, "Found " + (this.size - position) + " invalid bytes at the end of " + this.file.getFileName() + ", truncating it...");
+            this.channel.truncate(position);
+            this.size = position;
+        }
+    }
+
+    public void force() throws IOException {
+        this.channel.force(false);
+    }
+
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            SaveData.logException(2, e, "Cannot close segment " + this.file.getFileName());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(@NotNull LogRecord record, long position, int length);
+    }
+}
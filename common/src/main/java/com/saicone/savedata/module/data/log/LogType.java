@@ -0,0 +1,33 @@
+package com.saicone.savedata.module.data.log;
+
+import com.saicone.savedata.module.data.ClientType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+public enum LogType implements ClientType {
+
+    SEGMENTED;
+
+    @Override
+    public boolean isDependencyPresent() {
+        // Built-in format, it doesn't need any library
+        return true;
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return name();
+    }
+
+    @Override
+    public @Nullable String getDependency() {
+        return null;
+    }
+
+    @Override
+    public @NotNull Map<String, String> getRelocations() {
+        return Map.of();
+    }
+}
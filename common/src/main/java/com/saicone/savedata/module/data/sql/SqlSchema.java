@@ -127,17 +127,14 @@ public class SqlSchema {
 
     @NotNull
     public List<String> getList(@NotNull SqlType sql, @NotNull String type, @NotNull String... replacements) {
-        final Map<String, List<String>> map = queries.containsKey(sql) ? queries.get(sql) : queries.get(defaultType);
-        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
-            final List<String> list = new ArrayList<>();
-            for (String s : entry.getValue()) {
-                for (int i = 0; i < replacements.length; i = i + 2) {
-                    list.add(s.replace(replacements[i], replacements[i + 1]));
-                }
+        final List<String> list = new ArrayList<>();
+        for (String query : getList(sql, type)) {
+            for (int i = 0; i < replacements.length; i = i + 2) {
+                query = query.replace(replacements[i], replacements[i + 1]);
             }
-            entry.setValue(list);
+            list.add(query);
         }
-        return map.get(type);
+        return list;
     }
 
     @NotNull
@@ -81,7 +81,7 @@ public class DurationFormatter {
                 if (!unit.endsWith("S")) {
                     unit = unit + "S";
                 }
-                time += TimeUnit.valueOf(unit).convert(Long.parseLong(split[0]), timeUnit);
+                time += timeUnit.convert(Long.parseLong(split[0]), TimeUnit.valueOf(unit));
             } catch (Throwable t) {
                 throw new IllegalArgumentException("The duration '" + duration + "' cannot be parsed as " + timeUnit.name());
             }
@@ -2,13 +2,51 @@
 
 CREATE TABLE "{table_name}" (
   "id"         SERIAL PRIMARY KEY NOT NULL,
-  "user"       VARCHAR(36)        NOT NULL,
+  "user"       {user_type}        NOT NULL,
   "type"       VARCHAR(255),
   "key"        VARCHAR(255)       NOT NULL,
   "value"      TEXT               NOT NULL,
   "expiration" BIGINT
 );
-CREATE INDEX "{table_name}_user" ON "{table_name}" ("user");
+CREATE UNIQUE INDEX "{table_name}_user_key" ON "{table_name}" ("user", "key");
+CREATE INDEX "{table_name}_expiration" ON "{table_name}" ("expiration");
+
+-- create:element_table
+
+CREATE TABLE "{table_name}_element" (
+  "id"    BIGSERIAL PRIMARY KEY NOT NULL,
+  "user"  {user_type}           NOT NULL,
+  "key"   VARCHAR(255)          NOT NULL,
+  "value" TEXT                  NOT NULL
+);
+CREATE INDEX "{table_name}_element_user" ON "{table_name}_element" ("user", "key");
+
+-- alter:expiration_index
+
+CREATE INDEX "{table_name}_expiration" ON "{table_name}" ("expiration");
+
+-- alter:unique_index
+
+DELETE FROM "{table_name}" a USING "{table_name}" b WHERE a."user" = b."user" AND a."key" = b."key" AND a."id" < b."id";
+CREATE UNIQUE INDEX "{table_name}_user_key" ON "{table_name}" ("user", "key");
+
+-- alter:element_value
+
+ALTER TABLE "{table_name}_element" ALTER COLUMN "value" TYPE TEXT;
+
+-- alter:element_order
+
+ALTER TABLE "{table_name}" ADD COLUMN "id" BIGSERIAL PRIMARY KEY;
+
+-- alter:numeric_column
+
+ALTER TABLE "{table_name}" ADD COLUMN "value_num" NUMERIC;
+CREATE INDEX "{table_name}_top" ON "{table_name}" ("key", "value_num");
+
+-- alter:numeric_decimal
+
+ALTER TABLE "{table_name}" ALTER COLUMN "value_num" TYPE NUMERIC;
+UPDATE "{table_name}" SET "value_num" = NULL;
 
 -- select:data
 
@@ -18,10 +56,26 @@ SELECT {column_set} FROM "{table_name}" WHERE "user" = ?;
 
 SELECT {column_set} FROM "{table_name}" WHERE "user" = ? AND "key" = ?;
 
+-- select:users
+
+SELECT DISTINCT {column_set} FROM "{table_name}";
+
 -- select:top_entry
 
 SELECT {column_set} FROM "{table_name}" WHERE "key" = ?;
 
+-- select:top_entry_limit
+
+SELECT {column_set} FROM "{table_name}" WHERE "key" = ? AND "value_num" IS NOT NULL ORDER BY "value_num" DESC LIMIT ?;
+
+-- select:top_position
+
+SELECT COUNT(*) FROM "{table_name}" WHERE "key" = ? AND "value_num" > ?;
+
+-- select:numeric_missing
+
+SELECT {column_set} FROM "{table_name}" WHERE "key" = ? AND "value_num" IS NULL;
+
 -- insert:data
 
 INSERT INTO "{table_name}" (
@@ -32,10 +86,101 @@ INSERT INTO "{table_name}" (
   "expiration"
 ) VALUES (?, ?, ?, ?, ?);
 
+-- insert:data_numeric
+
+INSERT INTO "{table_name}" (
+  "user",
+  "type",
+  "key",
+  "value",
+  "expiration",
+  "value_num"
+) VALUES (?, ?, ?, ?, ?, ?);
+
+-- upsert:data
+
+INSERT INTO "{table_name}" (
+  "user",
+  "type",
+  "key",
+  "value",
+  "expiration"
+) VALUES (?, ?, ?, ?, ?) ON CONFLICT ("user", "key") DO UPDATE SET
+  "type" = EXCLUDED."type",
+  "value" = EXCLUDED."value",
+  "expiration" = EXCLUDED."expiration";
+
+-- upsert:data_numeric
+
+INSERT INTO "{table_name}" (
+  "user",
+  "type",
+  "key",
+  "value",
+  "expiration",
+  "value_num"
+) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT ("user", "key") DO UPDATE SET
+  "type" = EXCLUDED."type",
+  "value" = EXCLUDED."value",
+  "expiration" = EXCLUDED."expiration",
+  "value_num" = EXCLUDED."value_num";
+
 -- update:data
 
 UPDATE "{table_name}" SET {column_set} WHERE "id" = ?;
 
+-- update:data_number
+
+UPDATE "{table_name}" SET "value" = {expression}, "expiration" = ? WHERE "user" = ? AND "key" = ?;
+
 -- delete:data
 
-DELETE FROM "{table_name}" WHERE {column_set};
\ No newline at end of file
+DELETE FROM "{table_name}" WHERE {column_set};
+
+-- select:element
+
+SELECT {column_set} FROM "{table_name}_element" WHERE "user" = ? ORDER BY "id";
+
+-- select:element_entry
+
+SELECT {column_set} FROM "{table_name}_element" WHERE "user" = ? AND "key" = ? ORDER BY "id";
+
+-- insert:element
+
+INSERT INTO "{table_name}_element" (
+  "user",
+  "key",
+  "value"
+) VALUES (?, ?, ?);
+
+-- delete:element
+
+DELETE FROM "{table_name}_element" WHERE {column_set};
+
+-- select:expired
+
+SELECT {column_set} FROM "{table_name}" WHERE "expiration" > 0 AND "expiration" < ? LIMIT ?;
+
+-- delete:expired
+
+DELETE FROM "{table_name}" WHERE "id" = ? AND "expiration" > 0 AND "expiration" < ?;
+
+-- select:migration
+
+SELECT {column_set} FROM "{table_name}";
+
+-- select:element_migration
+
+SELECT {column_set} FROM "{table_name}" ORDER BY "id";
+
+-- alter:rename_table
+
+ALTER TABLE "{table_name}" RENAME TO "{new_name}";
+
+-- drop:index
+
+DROP INDEX "{index_name}";
+
+-- drop:table
+
+DROP TABLE "{table_name}";
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.saicone.savedata.api.data.type;
+
+import com.saicone.savedata.api.data.type.collection.ListDataType;
+import com.saicone.savedata.api.data.type.collection.SetDataType;
+import com.saicone.types.Types;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElementCodecTest {
+
+    private static final long[] LONGS = { 0L, 1L, -1L, 63L, -64L, 64L, 127L, 128L, 300L, -300L, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+
+    @Test
+    public void testZigzag() {
+        assertEquals(0L, ElementCodec.zigzag(0L));
+        assertEquals(1L, ElementCodec.zigzag(-1L));
+        assertEquals(2L, ElementCodec.zigzag(1L));
+        assertEquals(-1L, ElementCodec.zigzag(Long.MIN_VALUE));
+        for (long l : LONGS) {
+            assertEquals(l, ElementCodec.unzigzag(ElementCodec.zigzag(l)));
+        }
+    }
+
+    @Test
+    public void testVarLong() throws IOException {
+        for (long l : LONGS) {
+            final byte[] bytes = write(out -> ElementCodec.writeVarLong(out, l));
+            assertEquals(l, ElementCodec.readVarLong(input(bytes)));
+        }
+        // Small values use a single byte
+        assertEquals(1, write(out -> ElementCodec.writeVarLong(out, 127L)).length);
+        assertEquals(2, write(out -> ElementCodec.writeVarLong(out, 128L)).length);
+        assertEquals(10, write(out -> ElementCodec.writeVarLong(out, -1L)).length);
+    }
+
+    @Test
+    public void testVarInt() throws IOException {
+        for (int i : new int[] { 0, 1, 127, 128, 16384, Integer.MAX_VALUE }) {
+            final byte[] bytes = write(out -> ElementCodec.writeVarInt(out, i));
+            assertEquals(i, ElementCodec.readVarInt(input(bytes)));
+        }
+        // Negative numbers are never valid lengths
+        final byte[] bytes = write(out -> ElementCodec.writeVarInt(out, -1));
+        assertThrows(IOException.class, () -> ElementCodec.readVarInt(input(bytes)));
+    }
+
+    @Test
+    public void testMalformedVarLong() {
+        final byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0xFF);
+        assertThrows(IOException.class, () -> ElementCodec.readVarLong(input(bytes)));
+    }
+
+    @Test
+    public void testCodecs() throws IOException {
+        assertRoundTrip(ElementCodec.STRING, "");
+        assertRoundTrip(ElementCodec.STRING, "h\u00e9llo w\u00f6rld \ud83d\ude00");
+        for (long l : LONGS) {
+            assertRoundTrip(ElementCodec.LONG, l);
+            assertRoundTrip(ElementCodec.INTEGER, (int) l);
+            assertRoundTrip(ElementCodec.SHORT, (short) l);
+        }
+        assertRoundTrip(ElementCodec.BYTE, Byte.MIN_VALUE);
+        assertRoundTrip(ElementCodec.BOOLEAN, true);
+        assertRoundTrip(ElementCodec.DOUBLE, -0.5D);
+        assertRoundTrip(ElementCodec.FLOAT, Float.MAX_VALUE);
+        assertRoundTrip(ElementCodec.UUID, UUID.randomUUID());
+    }
+
+    @Test
+    public void testOf() {
+        assertSame(ElementCodec.INTEGER, ElementCodec.of(Types.INTEGER));
+        assertSame(ElementCodec.STRING, ElementCodec.of(Types.STRING));
+        assertSame(ElementCodec.UUID, ElementCodec.of(Types.UUID));
+    }
+
+    @Test
+    public void testList() {
+        final ListDataType<Integer> type = new ListDataType<>("test", Types.INTEGER.list(), Types.INTEGER, null, null, null, false);
+        final List<Integer> list = List.of(5, -3, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, 5);
+        final String saved = type.save(new ArrayList<>(list));
+        assertFalse(type.isOutdated(saved));
+        assertEquals(list, type.load(saved));
+
+        final String empty = type.save(new ArrayList<>());
+        assertEquals(List.of(), type.load(empty));
+    }
+
+    @Test
+    public void testSet() {
+        final SetDataType<String> type = new SetDataType<>("test", Types.STRING.set(), Types.STRING, null, null, null, false);
+        final Set<String> set = new LinkedHashSet<>(List.of("a", "bb", "\u00fc"));
+        assertEquals(set, type.load(type.save(set)));
+    }
+
+    @Test
+    public void testUnsupportedVersion() {
+        final ListDataType<Integer> type = new ListDataType<>("test", Types.INTEGER.list(), Types.INTEGER, null, null, null, false);
+        final String saved = Base64.getEncoder().encodeToString(new byte[] { 99, 0 });
+        assertThrows(RuntimeException.class, () -> type.load(saved));
+    }
+
+    @Test
+    public void testLegacy() throws IOException {
+        final ListDataType<Integer> type = new ListDataType<>("test", Types.INTEGER.list(), Types.INTEGER, null, null, null, false);
+        final List<Integer> list = new ArrayList<>(List.of(1, 2, 3));
+
+        // Old format, java serialized collection
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(out)) {
+            output.writeObject(list);
+        }
+        final String legacy = Base64.getEncoder().encodeToString(out.toByteArray());
+
+        assertTrue(type.isOutdated(legacy));
+        assertEquals(list, type.load(legacy));
+
+        final String saved = type.save(type.load(legacy));
+        assertFalse(type.isOutdated(saved));
+        assertEquals(list, type.load(saved));
+    }
+
+    private static <E> void assertRoundTrip(ElementCodec<E> codec, E element) throws IOException {
+        final byte[] bytes = write(out -> codec.write(out, element));
+        final DataInputStream input = input(bytes);
+        assertEquals(element, codec.read(input));
+        // Every written byte is read
+        assertEquals(0, input.available());
+    }
+
+    private static byte[] write(Output output) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(out)) {
+            output.write(stream);
+        }
+        return out.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @FunctionalInterface
+    private interface Output {
+        void write(DataOutput out) throws IOException;
+    }
+}
@@ -0,0 +1,112 @@
+package com.saicone.savedata.api.top;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RankTreeTest {
+
+    private static final Comparator<Integer> ORDER = Comparator.reverseOrder();
+
+    @Test
+    public void testInsertAndRemove() {
+        final Random random = new Random(42L);
+        final TreeSet<Integer> expected = new TreeSet<>(ORDER);
+        RankTree<Integer> tree = RankTree.empty(ORDER);
+        for (int i = 0; i < 2000; i++) {
+            final int value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(value);
+                tree = tree.remove(value);
+            } else {
+                expected.add(value);
+                tree = tree.insert(value);
+            }
+            if (i % 50 == 0) {
+                assertRanks(expected, tree);
+            }
+        }
+        assertRanks(expected, tree);
+    }
+
+    @Test
+    public void testSortedInsert() {
+        // Sorted input is the worst case of an unbalanced tree
+        RankTree<Integer> tree = RankTree.empty(ORDER);
+        final TreeSet<Integer> expected = new TreeSet<>(ORDER);
+        for (int i = 0; i < 1000; i++) {
+            tree = tree.insert(i);
+            expected.add(i);
+        }
+        assertRanks(expected, tree);
+        for (int i = 0; i < 1000; i += 2) {
+            tree = tree.remove(i);
+            expected.remove(i);
+        }
+        assertRanks(expected, tree);
+    }
+
+    @Test
+    public void testOf() {
+        final List<Integer> sorted = new ArrayList<>();
+        for (int i = 99; i >= 0; i--) {
+            sorted.add(i);
+        }
+        final RankTree<Integer> tree = RankTree.of(ORDER, sorted);
+        assertEquals(sorted, tree.toList());
+        final TreeSet<Integer> expected = new TreeSet<>(ORDER);
+        expected.addAll(sorted);
+        assertRanks(expected, tree);
+        expected.remove(50);
+        assertRanks(expected, tree.remove(50));
+    }
+
+    @Test
+    public void testInsertReplacesEqual() {
+        final RankTree<String> tree = RankTree.<String>empty(Comparator.comparingInt(String::length))
+                .insert("a")
+                .insert("bb")
+                .insert("cc");
+        assertEquals(2, tree.size());
+        assertEquals("cc", tree.get(1));
+        assertEquals("cc", tree.find("dd"));
+        assertEquals(1, tree.rank("dd"));
+    }
+
+    @Test
+    public void testPersistence() {
+        final RankTree<Integer> first = RankTree.<Integer>empty(ORDER).insert(1).insert(2).insert(3);
+        final RankTree<Integer> second = first.insert(4).remove(2);
+        assertEquals(List.of(3, 2, 1), first.toList());
+        assertEquals(List.of(4, 3, 1), second.toList());
+    }
+
+    @Test
+    public void testMissing() {
+        final RankTree<Integer> tree = RankTree.<Integer>empty(ORDER).insert(10).insert(20);
+        assertSame(tree, tree.remove(15));
+        assertEquals(-1, tree.rank(15));
+        assertNull(tree.find(15));
+        assertNull(tree.get(-1));
+        assertNull(tree.get(2));
+        assertTrue(RankTree.empty(ORDER).isEmpty());
+        assertNull(RankTree.empty(ORDER).get(0));
+    }
+
+    private static void assertRanks(TreeSet<Integer> expected, RankTree<Integer> tree) {
+        assertEquals(expected.size(), tree.size());
+        assertEquals(new ArrayList<>(expected), tree.toList());
+        int index = 0;
+        for (Integer value : expected) {
+            assertEquals(value, tree.get(index));
+            assertEquals(index, tree.rank(value));
+            index++;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.saicone.savedata.core.data;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataType;
+import com.saicone.types.Types;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpirationWheelTest {
+
+    private static final long START = 1_000_000L;
+    private static final long TICK = 100L;
+    private static final UUID USER = UUID.randomUUID();
+    private static final DataType<String> TYPE = DataType.<String>builder("test", Types.STRING).build();
+
+    private final List<ExpirationWheel.Timeout> timeouts = new ArrayList<>();
+    private final List<DataEntry<?>> expired = new ArrayList<>();
+    // 8 buckets, so a full round is 800 ms
+    private final ExpirationWheel wheel = new ExpirationWheel(TICK, 8, START, list -> {
+        for (ExpirationWheel.Timeout timeout : list) {
+            timeouts.add(timeout);
+            expired.add(timeout.getEntry());
+        }
+    });
+
+    private DataEntry<String> schedule(long expiration) {
+        final DataEntry<String> entry = TYPE.createEntry(null, "value", expiration);
+        wheel.schedule(USER, "db", entry);
+        return entry;
+    }
+
+    @Test
+    public void testExpiry() {
+        final DataEntry<String> entry = schedule(START + 1000);
+        assertEquals(1, wheel.size());
+
+        wheel.tick(START + 999);
+        assertTrue(expired.isEmpty());
+
+        wheel.tick(START + 1000);
+        assertEquals(List.of(entry), expired);
+        assertEquals(USER, timeouts.get(0).getUser());
+        assertEquals("db", timeouts.get(0).getDatabase());
+        assertEquals(START + 1000, timeouts.get(0).getExpiration());
+        assertEquals(0, wheel.size());
+
+        // Every entry is provided only once
+        wheel.tick(START + 5000);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testUnalignedExpiry() {
+        // Rounded up to the next tick, so an entry never expires before its time
+        final DataEntry<String> entry = schedule(START + 1050);
+        wheel.tick(START + 1000);
+        assertTrue(expired.isEmpty());
+        wheel.tick(START + 1100);
+        assertEquals(List.of(entry), expired);
+    }
+
+    @Test
+    public void testRounds() {
+        // Same bucket as tick 4, but three rounds later
+        final DataEntry<String> entry = schedule(START + 2800);
+        for (long time = START + TICK; time < START + 2800; time += TICK) {
+            wheel.tick(time);
+            assertTrue(expired.isEmpty(), "Expired at " + (time - START) + " ms");
+        }
+        wheel.tick(START + 2800);
+        assertEquals(List.of(entry), expired);
+    }
+
+    @Test
+    public void testCatchUp() {
+        final DataEntry<String> first = schedule(START + 300);
+        final DataEntry<String> second = schedule(START + 1500);
+        final DataEntry<String> third = schedule(START + 4000);
+
+        // Delayed more than a full round, every bucket is visited once
+        wheel.tick(START + 2000);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(first));
+        assertTrue(expired.contains(second));
+
+        wheel.tick(START + 3900);
+        assertEquals(2, expired.size());
+        wheel.tick(START + 4000);
+        assertEquals(3, expired.size());
+        assertTrue(expired.contains(third));
+    }
+
+    @Test
+    public void testPastExpiration() {
+        wheel.tick(START + 1000);
+        // Already expired entries are provided on next tick
+        final DataEntry<String> entry = schedule(START + 500);
+        wheel.tick(START + 1100);
+        assertEquals(List.of(entry), expired);
+    }
+
+    @Test
+    public void testCancel() {
+        final DataEntry<String> entry = schedule(START + 500);
+        wheel.cancel(entry);
+        assertEquals(0, wheel.size());
+        wheel.tick(START + 1000);
+        assertTrue(expired.isEmpty());
+
+        // Not temporary anymore
+        final DataEntry<String> other = schedule(START + 1500);
+        other.setExpiration(0L);
+        wheel.schedule(USER, "db", other);
+        wheel.tick(START + 2000);
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void testReschedule() {
+        final DataEntry<String> entry = schedule(START + 500);
+        entry.setExpiration(START + 1500);
+        wheel.schedule(USER, "db", entry);
+        assertEquals(1, wheel.size());
+
+        wheel.tick(START + 1000);
+        assertTrue(expired.isEmpty());
+        wheel.tick(START + 1500);
+        assertEquals(List.of(entry), expired);
+    }
+}
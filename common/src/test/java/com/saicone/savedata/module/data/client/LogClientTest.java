@@ -0,0 +1,155 @@
+package com.saicone.savedata.module.data.client;
+
+import com.saicone.savedata.api.data.DataEntry;
+import com.saicone.savedata.api.data.DataType;
+import com.saicone.savedata.module.data.log.LogSegment;
+import com.saicone.settings.node.MapNode;
+import com.saicone.types.Types;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogClientTest {
+
+    private static final DataType<String> TYPE = DataType.<String>builder("text", Types.STRING).build();
+    private static final DataType<String> OTHER_TYPE = DataType.<String>builder("other", Types.STRING).build();
+    // Long enough to fill the minimum segment size of 1 MB with a few thousand records
+    private static final String PADDING = "x".repeat(1024);
+
+    @TempDir
+    Path folder;
+
+    private final List<LogClient> clients = new ArrayList<>();
+
+    @AfterEach
+    public void close() {
+        for (LogClient client : clients) {
+            client.onClose();
+        }
+    }
+
+    private LogClient start() {
+        final MapNode config = new MapNode();
+        config.put("segment-size", 1);
+        // Compaction is only made by test
+        config.put("compaction-interval", "0");
+        final LogClient client = new LogClient("test", folder);
+        client.onLoad(config);
+        client.onStart();
+        clients.add(client);
+        return client;
+    }
+
+    @Test
+    public void testReplayAfterCompaction() {
+        final LogClient client = start();
+        final List<UUID> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(UUID.randomUUID());
+        }
+        // Live records on the oldest segment must be moved by compaction
+        final UUID kept = UUID.randomUUID();
+        client.saveDataEntry(kept, OTHER_TYPE.createEntry(null, "kept", null));
+        client.saveDataEntry(kept, TYPE.createEntry(null, "kept-text", null));
+
+        final Map<UUID, String> expected = new HashMap<>();
+        // Every user is saved many times, so old segments are mostly dead records
+        for (int round = 0; round < 40; round++) {
+            for (UUID user : users) {
+                final String value = round + ":" + user + ":" + PADDING;
+                client.saveDataEntry(user, TYPE.createEntry(null, value, null));
+                expected.put(user, value);
+            }
+        }
+        // Deleted users must stay deleted after compaction and replay
+        final List<UUID> deleted = users.subList(90, 100);
+        final Map<UUID, List<DataEntry<?>>> deletions = new HashMap<>();
+        for (UUID user : deleted) {
+            deletions.put(user, List.of(TYPE.createEntry(null, null, null)));
+            expected.remove(user);
+        }
+        client.deleteDataEntries(deletions);
+
+        final int segments = client.getSegmentCount();
+        assertTrue(segments > 2, "Expected multiple segments, found " + segments);
+
+        client.compact(true);
+        assertEquals(2, client.getSegmentCount());
+        assertData(client, expected, deleted);
+        assertEquals("kept", load(client, kept, OTHER_TYPE));
+        assertEquals("kept-text", load(client, kept, TYPE));
+
+        // Writes after compaction are appended into current segment
+        final String updated = "updated:" + PADDING;
+        client.saveDataEntry(users.get(0), TYPE.createEntry(null, updated, null));
+        expected.put(users.get(0), updated);
+        client.onClose();
+        clients.remove(client);
+
+        final LogClient replay = start();
+        assertData(replay, expected, deleted);
+        assertEquals("kept", load(replay, kept, OTHER_TYPE));
+        assertEquals("kept-text", load(replay, kept, TYPE));
+    }
+
+    @Test
+    public void testCompactionThreshold() {
+        final LogClient client = start();
+        final UUID user = UUID.randomUUID();
+        // Every record is live, so there's nothing to compact
+        for (int i = 0; i < 2000; i++) {
+            client.saveDataEntry(UUID.randomUUID(), TYPE.createEntry(null, PADDING, null));
+        }
+        client.saveDataEntry(user, TYPE.createEntry(null, "value", null));
+        final int segments = client.getSegmentCount();
+        assertTrue(segments >= 2);
+
+        client.compact();
+        assertEquals(segments, client.getSegmentCount());
+        assertEquals("value", load(client, user, TYPE));
+    }
+
+    @Test
+    public void testReplayUnfinishedCompaction() throws IOException {
+        final LogClient client = start();
+        final UUID user = UUID.randomUUID();
+        client.saveDataEntry(user, TYPE.createEntry(null, "value", null));
+        client.onClose();
+        clients.remove(client);
+
+        // Leftover of an interrupted compaction is discarded
+        final Path segment = LogSegment.getFile(client.getFolder(), 0L);
+        final Path compact = segment.resolveSibling(segment.getFileName() + ".compact");
+        Files.write(compact, new byte[] { 1, 2, 3 });
+
+        final LogClient replay = start();
+        assertEquals("value", load(replay, user, TYPE));
+        assertFalse(Files.exists(compact));
+    }
+
+    private static void assertData(LogClient client, Map<UUID, String> expected, List<UUID> deleted) {
+        for (Map.Entry<UUID, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), load(client, entry.getKey(), TYPE));
+        }
+        for (UUID user : deleted) {
+            assertNull(client.loadDataEntry(user, TYPE.getId(), TYPE));
+        }
+    }
+
+    private static String load(LogClient client, UUID user, DataType<String> type) {
+        final DataEntry<String> entry = client.loadDataEntry(user, type.getId(), type);
+        assertNotNull(entry, "Missing data '" + type.getId() + "' of user " + user);
+        return entry.getValue();
+    }
+}
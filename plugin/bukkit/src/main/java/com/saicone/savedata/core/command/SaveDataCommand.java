@@ -3,6 +3,7 @@ package com.saicone.savedata.core.command;
 import com.saicone.mcode.module.task.Task;
 import com.saicone.savedata.SaveData;
 import com.saicone.savedata.core.Lang;
+import com.saicone.savedata.module.data.file.FileType;
 import com.saicone.savedata.module.hook.Placeholders;
 import com.saicone.savedata.module.hook.PlayerProvider;
 import com.saicone.types.parser.BooleanParser;
@@ -16,10 +17,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class SaveDataCommand extends Command implements MainCommand {
 
@@ -81,6 +84,12 @@ public class SaveDataCommand extends Command implements MainCommand {
         if (args.length == 1) {
             return super.tabComplete(sender, alias, args, location);
         }
+        if (args[0].equalsIgnoreCase("migrate")) {
+            if (args.length == 2) {
+                return new ArrayList<>(SaveData.get().getDataCore().getDatabases().keySet());
+            }
+            return args.length == 3 ? Arrays.stream(FileType.VALUES).map(Enum::name).collect(Collectors.toList()) : List.of();
+        }
         if (args.length < 3) {
             return OPERATOR;
         }